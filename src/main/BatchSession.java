@@ -0,0 +1,205 @@
+package main;
+
+import main.model.Book;
+import main.model.Reading;
+import main.model.ReadingOutcome;
+import main.model.User;
+import main.service.AuthenticationService;
+import main.service.BookSearchService;
+import main.service.ServiceManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+public class BatchSession {
+    private static final int PIPELINE_DEPTH = 500;
+
+    public interface Backend {
+        ServiceManager forBranch(String branch) throws Exception;
+    }
+
+    private final AuthenticationService authenticationService;
+    private final BookSearchService bookSearchService;
+    private final Backend backend;
+    private final Writer out;
+
+    private User currentUser;
+    private String pendingCommand;
+    private final List<Book> pendingBooks = new ArrayList<>();
+    private int succeeded;
+    private int failed;
+
+    public BatchSession(AuthenticationService authenticationService, BookSearchService bookSearchService, Backend backend, Writer out) {
+        this.authenticationService = authenticationService;
+        this.bookSearchService = bookSearchService;
+        this.backend = backend;
+        this.out = out;
+    }
+
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\\|", -1);
+            for (int i = 0; i < fields.length; i++) fields[i] = fields[i].trim();
+            try {
+                execute(fields[0].toLowerCase(), fields);
+            } catch (Exception e) {
+                failure(fields[0], line + " (line " + lineNumber + ")", e.getMessage());
+            }
+        }
+        flushPipeline();
+        out.write("done|" + succeeded + " succeeded|" + failed + " failed\n");
+        out.flush();
+    }
+
+    private void execute(String command, String[] fields) throws Exception {
+        if (!command.equals(pendingCommand)) flushPipeline();
+        switch (command) {
+            case "login":
+                requireFields(fields, 3);
+                currentUser = authenticationService.authenticate(fields[1], fields[2]);
+                success(command, fields[1]);
+                break;
+            case "logout":
+                currentUser = null;
+                success(command, "");
+                break;
+            case "search":
+                requireFields(fields, 2);
+                requireLogin();
+                for (Book book : bookSearchService.searchBookByName(fields[1])) {
+                    out.write("book|" + book.getId() + "|" + book.getName() + "|" + book.getBookStatus() + "\n");
+                }
+                success(command, fields[1]);
+                break;
+            case "borrow":
+            case "return":
+                requireFields(fields, 2);
+                requireLogin();
+                Book book = command.equals("borrow") ? findAvailableBook(fields[1]) : findBorrowedBook(fields[1]);
+                pendingCommand = command;
+                pendingBooks.add(book);
+                if (pendingBooks.size() >= PIPELINE_DEPTH) flushPipeline();
+                break;
+            case "add":
+                requireFields(fields, 4);
+                requireLogin();
+                List<String> authorNames = new ArrayList<>();
+                for (String authorName : fields[3].split(",")) {
+                    if (!authorName.trim().isEmpty()) authorNames.add(authorName.trim());
+                }
+                String branch = fields.length > 4 && !fields[4].isEmpty() ? fields[4] : null;
+                backend.forBranch(branch).getAdministrativeService().addBook(currentUser, fields[1], authorNames, fields[2]);
+                success(command, fields[1]);
+                break;
+            case "remove":
+                requireFields(fields, 2);
+                requireLogin();
+                Book removed = findAvailableBook(fields[1]);
+                if (backend.forBranch(removed.getBranch()).getAdministrativeService().removeBook(currentUser, removed))
+                    success(command, fields[1]);
+                else failure(command, fields[1], "Processing Error");
+                break;
+            default:
+                throw new Exception("Unknown command " + fields[0]);
+        }
+    }
+
+    private void flushPipeline() throws IOException {
+        if (pendingCommand == null) return;
+        String command = pendingCommand;
+        pendingCommand = null;
+        Map<String, List<Book>> booksByBranch = new LinkedHashMap<>();
+        for (Book book : pendingBooks) {
+            booksByBranch.computeIfAbsent(book.getBranch(), b -> new ArrayList<>()).add(book);
+        }
+        pendingBooks.clear();
+        for (Map.Entry<String, List<Book>> branchBooks : booksByBranch.entrySet()) {
+            List<Book> books = branchBooks.getValue();
+            try {
+                ServiceManager serviceManager = backend.forBranch(branchBooks.getKey());
+                User user = serviceManager.localUser(currentUser);
+                List<ReadingOutcome> outcomes = command.equals("borrow")
+                        ? serviceManager.getReadingService().borrowBooks(user, books)
+                        : serviceManager.getReadingService().returnBooks(user, books);
+                for (ReadingOutcome outcome : outcomes) {
+                    if (outcome.isSuccessful()) success(command, outcome.getBook().getName());
+                    else failure(command, outcome.getBook() == null ? "" : outcome.getBook().getName(), outcome.getMessage());
+                }
+            } catch (Exception e) {
+                for (Book book : books) failure(command, book.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private Book findAvailableBook(String name) throws Exception {
+        for (Book book : findBooksNamed(name)) {
+            if (book.isAvailable() && !isPending(book)) return book;
+        }
+        throw new Exception("No available copy of " + name);
+    }
+
+    private Book findBorrowedBook(String name) throws Exception {
+        Map<String, List<Book>> candidatesByBranch = new LinkedHashMap<>();
+        for (Book book : findBooksNamed(name)) {
+            if (!isPending(book)) candidatesByBranch.computeIfAbsent(book.getBranch(), b -> new ArrayList<>()).add(book);
+        }
+        for (Map.Entry<String, List<Book>> candidates : candidatesByBranch.entrySet()) {
+            ServiceManager serviceManager = backend.forBranch(candidates.getKey());
+            Map<Integer, Reading> active = serviceManager.getReadingService()
+                    .findActiveReadings(serviceManager.localUser(currentUser), candidates.getValue());
+            for (Book book : candidates.getValue()) {
+                if (active.containsKey(book.getId())) return book;
+            }
+        }
+        throw new Exception("User currently has no reading on " + name);
+    }
+
+    private List<Book> findBooksNamed(String name) throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (Book book : bookSearchService.searchBookByName(name)) {
+            if (book.getName().equalsIgnoreCase(name)) books.add(book);
+        }
+        if (books.isEmpty()) throw new Exception("No book named " + name);
+        return books;
+    }
+
+    private boolean isPending(Book book) {
+        for (Book pending : pendingBooks) {
+            if (pending.getId() == book.getId() && Objects.equals(pending.getBranch(), book.getBranch())) return true;
+        }
+        return false;
+    }
+
+    private void requireLogin() throws Exception {
+        if (currentUser == null) throw new Exception("Please login to do this operation");
+    }
+
+    private static void requireFields(String[] fields, int count) throws Exception {
+        if (fields.length < count) throw new Exception(fields[0] + " needs " + (count - 1) + " argument(s)");
+    }
+
+    private void success(String command, String subject) throws IOException {
+        succeeded++;
+        out.write("ok|" + command + "|" + subject + "\n");
+    }
+
+    private void failure(String command, String subject, String message) throws IOException {
+        failed++;
+        out.write("error|" + command + "|" + subject + "|" + message + "\n");
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+}
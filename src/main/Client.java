@@ -4,19 +4,31 @@ import main.model.Book;
 import main.model.User;
 import main.repository.BaseDataSource;
 import main.repository.DataSourceBuilder;
+import main.repository.FileAuditSink;
+import main.repository.PostgresInvalidationBus;
+import main.repository.ReplicatedDataSource;
 import main.service.*;
 import main.util.IOUtil;
+import main.workload.TraceRecord;
+import main.workload.WorkloadRecorder;
 
+import java.io.*;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class Client {
     private DataSourceBuilder dataSourceBuilder;
-    private AdministrativeService administrativeService;
     private AuthenticationService authenticationService;
-    private ReadingService readingService;
     private BookSearchService bookSearchService;
+    private ServiceManager serviceManager;
+    private ShardedServiceManager shardedServiceManager;
+    private WorkloadRecorder recorder;
 
     User currentUser = null;
     Book selectedBook = null;
@@ -26,7 +38,9 @@ public class Client {
     Client() {
         try {
             initializeSetup();
-            start();
+            String script = System.getProperty("library.script");
+            if (script != null) runScript(script);
+            else start();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -34,15 +48,69 @@ public class Client {
 
     }
 
-    private void initializeSetup() throws SQLException, ClassNotFoundException {
-        BaseDataSource baseDataSource = DataSourceBuilder.build("org.postgresql.Driver", "jdbc:postgresql://localhost:5432/library_mgmt_upgraded", "postgres", "1");
-        ServiceManager serviceManager = new ServiceManager(baseDataSource);
-        administrativeService = serviceManager.getAdministrativeService();
+    private void initializeSetup() throws Exception {
+        String recordTrace = System.getProperty("library.recordTrace");
+        if (recordTrace != null) recorder = new WorkloadRecorder(Paths.get(recordTrace));
+        String branches = System.getProperty("library.branches");
+        if (branches != null) {
+            initializeBranches(branches);
+            return;
+        }
+        String replicaUrls = System.getProperty("library.replicaUrls", "");
+        BaseDataSource baseDataSource = DataSourceBuilder.build("org.postgresql.Driver", "jdbc:postgresql://localhost:5432/library_mgmt_upgraded", "postgres", "1",
+                replicaUrls.isEmpty() ? new ArrayList<>() : Arrays.asList(replicaUrls.split(",")),
+                ReplicatedDataSource.Balancing.valueOf(System.getProperty("library.replicaBalancing", "LEAST_LOADED")),
+                Long.getLong("library.readYourWritesMillis", 5000));
+        serviceManager = new ServiceManager(baseDataSource, Boolean.getBoolean("library.inMemoryCatalog"));
+        String catalogSnapshot = System.getProperty("library.catalogSnapshot");
+        if (catalogSnapshot != null)
+            serviceManager.enableCatalogSnapshot(Paths.get(catalogSnapshot), Long.getLong("library.catalogSnapshotMinutes", 15));
+        if (Boolean.getBoolean("library.migrateReadingKeys"))
+            IOUtil.println("Migrated " + serviceManager.migrateReadingKeys(Integer.getInteger("library.migrationBatchSize", 5000)) + " readings");
+        if (Boolean.getBoolean("library.readingArchive"))
+            serviceManager.enableReadingArchive(Long.getLong("library.readingRetentionDays", 90), Long.getLong("library.readingArchiveMinutes", 60));
+        String auditLog = System.getProperty("library.auditLog");
+        if (auditLog != null)
+            serviceManager.enableAuditLog(auditLog.equals("table") ? serviceManager.getAuditRepo() : new FileAuditSink(Paths.get(auditLog)),
+                    Integer.getInteger("library.auditBufferSize", 65536),
+                    AuditLog.Backpressure.valueOf(System.getProperty("library.auditBackpressure", "BLOCK")));
+        serviceManager.setLazyAssociations(Boolean.parseBoolean(System.getProperty("library.lazyAssociations", "true")));
+        int hydrationParallelism = Integer.getInteger("library.hydrationParallelism", 0);
+        if (hydrationParallelism > 1)
+            serviceManager.enableParallelHydration(hydrationParallelism, Integer.getInteger("library.hydrationBatchSize", 64));
+        String writeBehind = System.getProperty("library.writeBehind");
+        if (writeBehind != null)
+            serviceManager.enableWriteBehind(Paths.get(writeBehind), Long.getLong("library.writeBehindMillis", 200));
+        if (Boolean.getBoolean("library.invalidationBus"))
+            serviceManager.enableInvalidationBus(new PostgresInvalidationBus(baseDataSource), Long.getLong("library.invalidationWindowMillis", 50));
         authenticationService = serviceManager.getAuthenticationService();
-        readingService = serviceManager.getReadingService();
         bookSearchService = serviceManager.getBookSearchService();
     }
 
+    private void initializeBranches(String branches) throws Exception {
+        Map<String, BaseDataSource> dataSources = new LinkedHashMap<>();
+        for (String branch : branches.split(",")) {
+            String[] branchAndUrl = branch.split("=", 2);
+            dataSources.put(branchAndUrl[0].trim(), DataSourceBuilder.build("org.postgresql.Driver", branchAndUrl[1].trim(), "postgres", "1"));
+        }
+        shardedServiceManager = new ShardedServiceManager(dataSources, Boolean.getBoolean("library.inMemoryCatalog"));
+        authenticationService = shardedServiceManager.forBranch(shardedServiceManager.getHomeBranch()).getAuthenticationService();
+        bookSearchService = shardedServiceManager.getBookSearchService();
+    }
+
+    private void runScript(String script) throws Exception {
+        Reader source = script.equals("-") ? new InputStreamReader(System.in) : new FileReader(script);
+        try (BufferedReader in = new BufferedReader(source, 1 << 16)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+            new BatchSession(authenticationService, bookSearchService, this::serviceManagerFor, out).run(in);
+        }
+    }
+
+    private ServiceManager serviceManagerFor(String branch) throws Exception {
+        if (shardedServiceManager == null) return serviceManager;
+        return shardedServiceManager.forBranch(branch);
+    }
+
     private void start() {
         while (!loggedOut) {
             if (isLoggedIn())
@@ -124,7 +192,7 @@ public class Client {
         String password = IOUtil.readString();
 
         try {
-            currentUser = authenticationService.authenticate(username, password);
+            currentUser = traced(TraceRecord.Operation.AUTHENTICATE, () -> authenticationService.authenticate(username, password), username);
         } catch (Exception e) {
             IOUtil.println(e.getMessage());
         }
@@ -135,10 +203,14 @@ public class Client {
         IOUtil.println("Enter the book name");
         String criteria = IOUtil.readString();
         try {
-            List<Book> books = bookSearchService.searchBookByName(criteria);
+            List<Book> books = traced(TraceRecord.Operation.SEARCH, () -> bookSearchService.searchBookByName(criteria), currentUser.getUsername(), criteria);
+            if (books.isEmpty()) {
+                books = bookSearchService.searchBookByNameFuzzy(criteria, 10);
+                if (!books.isEmpty()) IOUtil.println("No exact match found. Did you mean:");
+            }
             int index = 1;
             for (Book book : books) {
-                IOUtil.println(index + " - " + book.toString());
+                IOUtil.println(index + " - " + book.describe());
                 index++;
             }
             IOUtil.println("0 - go back to main menu");
@@ -152,7 +224,7 @@ public class Client {
             }
             if (bookIndex == 0) return;
             IOUtil.println("You have selected the below book");
-            IOUtil.println(books.get(bookIndex - 1).toString());
+            IOUtil.println(books.get(bookIndex - 1).describe());
             selectedBook = books.get(bookIndex - 1);
         } catch (SQLException e) {
             IOUtil.println(e.getMessage());
@@ -167,8 +239,15 @@ public class Client {
             IOUtil.println("To borrow any book, you need to select a book searching by its name");
             return;
         }
+        if (!selectedBook.isAvailable()) {
+            reserveSelectedBook();
+            return;
+        }
         try {
-            if (readingService.borrowBook(currentUser, selectedBook)) {
+            ServiceManager branch = serviceManagerFor(selectedBook.getBranch());
+            ReadingService readingService = branch.getReadingService();
+            User user = branch.localUser(currentUser);
+            if (traced(TraceRecord.Operation.BORROW, () -> readingService.borrowBook(user, selectedBook), bookArgs(selectedBook))) {
                 selectedBook = null;
                 IOUtil.println("Book has been borrowed successfully");
             } else {
@@ -180,13 +259,32 @@ public class Client {
     }
 
 
+    private void reserveSelectedBook() {
+        IOUtil.println("Book is currently issued. Reserve it? (y/n)");
+        if (!IOUtil.readString().equalsIgnoreCase("y")) return;
+        try {
+            ServiceManager branch = serviceManagerFor(selectedBook.getBranch());
+            ReservationService reservationService = branch.getReservationService();
+            User user = branch.localUser(currentUser);
+            reservationService.reserveBook(user, selectedBook);
+            IOUtil.println("Book reserved. Your position in the queue: " + reservationService.positionOf(user, selectedBook));
+            selectedBook = null;
+        } catch (Exception e) {
+            IOUtil.println(e.getMessage());
+        }
+    }
+
+
     private void returnSelectedBook() {
         if (!hasSelectedBook()) {
             IOUtil.println("To return any book, you need to select a book searching by its name");
             return;
         }
         try {
-            if (readingService.returnBook(currentUser, selectedBook)) {
+            ServiceManager branch = serviceManagerFor(selectedBook.getBranch());
+            ReadingService readingService = branch.getReadingService();
+            User user = branch.localUser(currentUser);
+            if (traced(TraceRecord.Operation.RETURN, () -> readingService.returnBook(user, selectedBook), bookArgs(selectedBook))) {
                 selectedBook = null;
                 IOUtil.println("Returned the selected book successfully");
             } else {
@@ -214,8 +312,15 @@ public class Client {
             authorNames.add(authorName);
             authorName = IOUtil.readLine();
         }
+        String branch = null;
+        if (shardedServiceManager != null) {
+            IOUtil.println("Enter the branch " + shardedServiceManager.getBranches());
+            branch = IOUtil.readLine().trim();
+        }
         try {
-            administrativeService.addBook(currentUser, bookName, authorNames, publisherName);
+            AdministrativeService administrativeService = serviceManagerFor(branch).getAdministrativeService();
+            traced(TraceRecord.Operation.ADD, () -> administrativeService.addBook(currentUser, bookName, authorNames, publisherName),
+                    currentUser.getUsername(), bookName, publisherName, String.join("\n", authorNames));
         } catch (Exception e) {
             IOUtil.println(e.getMessage());
         }
@@ -228,7 +333,8 @@ public class Client {
         }
         IOUtil.println("Remove books from library");
         try {
-            administrativeService.removeBook(currentUser, selectedBook);
+            AdministrativeService administrativeService = serviceManagerFor(selectedBook.getBranch()).getAdministrativeService();
+            traced(TraceRecord.Operation.REMOVE, () -> administrativeService.removeBook(currentUser, selectedBook), bookArgs(selectedBook));
         } catch (Exception e) {
             IOUtil.println(e.getMessage());
         }
@@ -238,6 +344,20 @@ public class Client {
         IOUtil.println("Logging Out");
         loggedOut = true;
         currentUser = null;
+        try {
+            if (recorder != null) recorder.close();
+        } catch (Exception e) {
+            IOUtil.println(e.getMessage());
+        }
+    }
+
+    private <T> T traced(TraceRecord.Operation operation, Callable<T> call, String... args) throws Exception {
+        if (recorder == null) return call.call();
+        return recorder.record(operation, call, args);
+    }
+
+    private String[] bookArgs(Book book) {
+        return new String[]{currentUser.getUsername(), String.valueOf(book.getId()), book.getName()};
     }
 
     private boolean hasSelectedBook() {
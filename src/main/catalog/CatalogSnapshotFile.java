@@ -0,0 +1,47 @@
+package main.catalog;
+
+import main.repository.AuthorRepo;
+import main.repository.PublisherRepo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class CatalogSnapshotFile {
+    private static final int MAGIC = 0x4C42434B;
+    private static final int VERSION = 3;
+
+    public static void write(ColumnarCatalog catalog, long changeWatermark, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(changeWatermark);
+            catalog.writeTo(out);
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static long load(Path file, ColumnarCatalog catalog, AuthorRepo authorRepo, PublisherRepo publisherRepo) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Catalog snapshot too large to map: " + file);
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC) throw new IOException("Not a catalog snapshot: " + file);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported catalog snapshot version " + version);
+            long changeWatermark = in.getLong();
+            catalog.readFrom(in, authorRepo, publisherRepo);
+            return changeWatermark;
+        }
+    }
+}
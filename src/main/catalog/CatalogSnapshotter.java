@@ -0,0 +1,109 @@
+package main.catalog;
+
+import main.repository.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class CatalogSnapshotter {
+    private final BookRepo bookRepo;
+    private final AuthorRepo authorRepo;
+    private final PublisherRepo publisherRepo;
+    private final BookChangeLogRepo changeLogRepo;
+    private final Path file;
+    private volatile long retentionMillis = TimeUnit.DAYS.toMillis(7);
+    private ScheduledExecutorService scheduler;
+
+    public CatalogSnapshotter(BookRepo bookRepo, AuthorRepo authorRepo, PublisherRepo publisherRepo,
+                              BookChangeLogRepo changeLogRepo, Path file) {
+        this.bookRepo = bookRepo;
+        this.authorRepo = authorRepo;
+        this.publisherRepo = publisherRepo;
+        this.changeLogRepo = changeLogRepo;
+        this.file = file;
+    }
+
+    public void setRetentionMillis(long retentionMillis) {
+        this.retentionMillis = retentionMillis;
+    }
+
+    public ColumnarCatalog loadOrBuild() throws Exception {
+        changeLogRepo.install();
+        if (Files.exists(file)) {
+            ColumnarCatalog catalog = new ColumnarCatalog();
+            try {
+                long watermark = CatalogSnapshotFile.load(file, catalog, authorRepo, publisherRepo);
+                if (watermark >= changeLogRepo.horizon()) {
+                    catalog.setChangeWatermark(watermark);
+                    bookRepo.addListener(catalog);
+                    catchUp(catalog);
+                    return catalog;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        long watermark = changeLogRepo.currentWatermark();
+        ColumnarCatalog catalog = ColumnarCatalog.load(bookRepo, authorRepo, publisherRepo);
+        catalog.setChangeWatermark(watermark);
+        CatalogSnapshotFile.write(catalog, watermark, file);
+        return catalog;
+    }
+
+    public void writeSnapshot(ColumnarCatalog catalog) throws Exception {
+        catchUp(catalog);
+        CatalogSnapshotFile.write(catalog, catalog.getChangeWatermark(), file);
+    }
+
+    public void catchUp(ColumnarCatalog catalog) throws Exception {
+        long watermark = changeLogRepo.currentWatermark();
+        replay(catalog, catalog.getChangeWatermark());
+        catalog.setChangeWatermark(watermark);
+    }
+
+    public synchronized void start(ColumnarCatalog catalog, long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot(catalog);
+                if (retentionMillis > 0) changeLogRepo.purgeOlderThan(retentionMillis);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) scheduler.shutdown();
+        scheduler = null;
+    }
+
+    private void replay(ColumnarCatalog catalog, long watermark) throws Exception {
+        Set<Integer> changedBookIds = new LinkedHashSet<>();
+        for (BookChange change : changeLogRepo.findSince(watermark)) {
+            changedBookIds.add(change.getBookId());
+        }
+        BookRowHandler refresh = (id, name, authorIds, publisherId, status, version) -> {
+            for (Integer authorId : authorIds) {
+                if (!catalog.hasAuthor(authorId)) catalog.putAuthor(authorId, authorRepo.findById(authorId));
+            }
+            if (!catalog.hasPublisher(publisherId))
+                catalog.putPublisher(publisherId, publisherRepo.findById(publisherId));
+            catalog.put(id, name, authorIds, publisherId, status, version);
+        };
+        for (Integer bookId : changedBookIds) {
+            if (!bookRepo.findRowById(bookId, refresh)) catalog.remove(bookId);
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package main.catalog;
+
+import main.model.Author;
+import main.model.Book;
+import main.model.BookStatus;
+import main.model.BookSummary;
+import main.model.Publisher;
+import main.repository.AuthorRepo;
+import main.repository.BookChangeListener;
+import main.repository.BookRepo;
+import main.repository.PublisherRepo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class ColumnarCatalog implements BookChangeListener {
+    private static final BookStatus[] STATUSES = BookStatus.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private int[] ids = new int[16];
+    private int[] titleOffsets = new int[16];
+    private int[] titleLengths = new int[16];
+    private int[] authorOffsets = new int[16];
+    private int[] authorCounts = new int[16];
+    private int[] publisherIds = new int[16];
+    private byte[] statuses = new byte[16];
+    private int[] versions = new int[16];
+
+    private byte[] titleArena = new byte[1024];
+    private int titleArenaUsed;
+    private int titleGarbage;
+    private int[] authorArena = new int[64];
+    private int authorArenaUsed;
+    private int authorGarbage;
+
+    private Author[] authorsById = new Author[16];
+    private Publisher[] publishersById = new Publisher[16];
+    private volatile long changeWatermark;
+
+    public static ColumnarCatalog load(BookRepo bookRepo, AuthorRepo authorRepo, PublisherRepo publisherRepo) throws Exception {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        for (Map.Entry<Integer, Author> author : authorRepo.findAll().entrySet()) {
+            catalog.putAuthor(author.getKey(), author.getValue());
+        }
+        for (Map.Entry<Integer, Publisher> publisher : publisherRepo.findAll().entrySet()) {
+            catalog.putPublisher(publisher.getKey(), publisher.getValue());
+        }
+        bookRepo.forEachRow(catalog::put);
+        bookRepo.addListener(catalog);
+        return catalog;
+    }
+
+    public long getChangeWatermark() {
+        return changeWatermark;
+    }
+
+    public void setChangeWatermark(long changeWatermark) {
+        this.changeWatermark = changeWatermark;
+    }
+
+    public void putAuthor(int id, Author author) {
+        lock.writeLock().lock();
+        try {
+            if (id >= authorsById.length) authorsById = Arrays.copyOf(authorsById, Math.max(id + 1, authorsById.length * 2));
+            authorsById[id] = author;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putPublisher(int id, Publisher publisher) {
+        lock.writeLock().lock();
+        try {
+            if (id >= publishersById.length)
+                publishersById = Arrays.copyOf(publishersById, Math.max(id + 1, publishersById.length * 2));
+            publishersById[id] = publisher;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int id, String name, Integer[] authorIds, int publisherId, BookStatus status, int version) {
+        byte[] title = name.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row >= 0) {
+                titleGarbage += titleLengths[row];
+                authorGarbage += authorCounts[row];
+            } else {
+                row = -row - 1;
+                insertRow(row);
+                ids[row] = id;
+            }
+            titleOffsets[row] = appendTitle(title);
+            titleLengths[row] = title.length;
+            authorOffsets[row] = appendAuthors(authorIds);
+            authorCounts[row] = authorIds.length;
+            publisherIds[row] = publisherId;
+            statuses[row] = (byte) status.ordinal();
+            versions[row] = version;
+            compactIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row < 0) return false;
+            titleGarbage += titleLengths[row];
+            authorGarbage += authorCounts[row];
+            deleteRow(row);
+            compactIfFragmented();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean setStatus(int id, BookStatus status, int version) {
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            if (row < 0) return false;
+            if (version >= 0) {
+                if (version < versions[row]) return false;
+                versions[row] = version;
+            }
+            statuses[row] = (byte) status.ordinal();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Book findById(int id) throws Exception {
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, size, id);
+            return row < 0 ? null : toBook(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Book> findBooksByName(String fragment) throws Exception {
+        return findBooksByName(fragment, null);
+    }
+
+    public List<Book> findBooksByName(String fragment, BookStatus status) throws Exception {
+        return toBooks(nameMatcher(fragment), status);
+    }
+
+    public List<Book> findBooksByAuthor(String authorName, BookStatus status) throws Exception {
+        return toBooks(row -> {
+            for (int i = authorOffsets[row]; i < authorOffsets[row] + authorCounts[row]; i++) {
+                Author author = authorsById[authorArena[i]];
+                if (author != null && author.getName().equalsIgnoreCase(authorName)) return true;
+            }
+            return false;
+        }, status);
+    }
+
+    public List<Book> findBooksByPublisher(String publisherName, BookStatus status) throws Exception {
+        return toBooks(row -> {
+            Publisher publisher = publishersById[publisherIds[row]];
+            return publisher != null && publisher.getName().equalsIgnoreCase(publisherName);
+        }, status);
+    }
+
+    public List<BookSummary> findSummariesByName(String fragment, BookStatus status) {
+        RowMatcher matcher = nameMatcher(fragment);
+        List<BookSummary> summaries = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (matchesStatus(row, status) && matcher.matches(row)) {
+                    summaries.add(new BookSummary(ids[row], title(row), STATUSES[statuses[row]]));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return summaries;
+    }
+
+    private interface RowMatcher {
+        boolean matches(int row);
+    }
+
+    private RowMatcher nameMatcher(String fragment) {
+        String lowerFragment = fragment.toLowerCase();
+        byte[] pattern = lowerFragment.getBytes(StandardCharsets.UTF_8);
+        if (pattern.length == lowerFragment.length())
+            return row -> containsIgnoreAsciiCase(titleOffsets[row], titleLengths[row], pattern);
+        return row -> title(row).toLowerCase().contains(lowerFragment);
+    }
+
+    private boolean matchesStatus(int row, BookStatus status) {
+        return status == null || statuses[row] == status.ordinal();
+    }
+
+    private List<Book> toBooks(RowMatcher matcher, BookStatus status) throws Exception {
+        List<Book> books = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (matchesStatus(row, status) && matcher.matches(row)) books.add(toBook(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return books;
+    }
+
+    @Override
+    public void bookSaved(Book book, Integer[] authorIds, int publisherId) {
+        List<Author> authors = book.getAuthors();
+        for (int i = 0; i < authorIds.length && i < authors.size(); i++) {
+            putAuthor(authorIds[i], authors.get(i));
+        }
+        putPublisher(publisherId, book.getPublisher());
+        put(book.getId(), book.getName(), authorIds, publisherId, book.getBookStatus(), book.getVersion());
+    }
+
+    @Override
+    public void bookDeleted(int bookId) {
+        remove(bookId);
+    }
+
+    @Override
+    public void bookStatusChanged(int bookId, BookStatus status, int version) {
+        setStatus(bookId, status, version);
+    }
+
+    @Override
+    public void booksRetained(Set<Integer> bookIds) {
+        lock.writeLock().lock();
+        try {
+            for (int row = size - 1; row >= 0; row--) {
+                if (bookIds.contains(ids[row])) continue;
+                titleGarbage += titleLengths[row];
+                authorGarbage += authorCounts[row];
+                deleteRow(row);
+            }
+            compactIfFragmented();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public interface EntryVisitor {
+        void visit(int id, String title, List<String> authorNames, BookStatus status);
+    }
+
+    public void forEachEntry(EntryVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                List<String> authorNames = new ArrayList<>(authorCounts[row]);
+                for (int i = authorOffsets[row]; i < authorOffsets[row] + authorCounts[row]; i++) {
+                    Author author = authorsById[authorArena[i]];
+                    if (author != null) authorNames.add(author.getName());
+                }
+                visitor.visit(ids[row], title(row), authorNames, STATUSES[statuses[row]]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean hasAuthor(int id) {
+        lock.readLock().lock();
+        try {
+            return id < authorsById.length && authorsById[id] != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean hasPublisher(int id) {
+        lock.readLock().lock();
+        try {
+            return id < publishersById.length && publishersById[id] != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            int authorCount = 0;
+            for (Author author : authorsById) if (author != null) authorCount++;
+            out.writeInt(authorCount);
+            for (int id = 0; id < authorsById.length; id++) {
+                if (authorsById[id] != null) writeEntry(out, id, authorsById[id].getName());
+            }
+            int publisherCount = 0;
+            for (Publisher publisher : publishersById) if (publisher != null) publisherCount++;
+            out.writeInt(publisherCount);
+            for (int id = 0; id < publishersById.length; id++) {
+                if (publishersById[id] != null) writeEntry(out, id, publishersById[id].getName());
+            }
+
+            out.writeInt(size);
+            writeInts(out, ids, size);
+            writeInts(out, titleOffsets, size);
+            writeInts(out, titleLengths, size);
+            writeInts(out, authorOffsets, size);
+            writeInts(out, authorCounts, size);
+            writeInts(out, publisherIds, size);
+            out.write(statuses, 0, size);
+            writeInts(out, versions, size);
+            out.writeInt(titleArenaUsed);
+            out.write(titleArena, 0, titleArenaUsed);
+            out.writeInt(authorArenaUsed);
+            writeInts(out, authorArena, authorArenaUsed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void readFrom(ByteBuffer in, AuthorRepo authorRepo, PublisherRepo publisherRepo) {
+        lock.writeLock().lock();
+        try {
+            int authorCount = in.getInt();
+            for (int i = 0; i < authorCount; i++) {
+                int id = in.getInt();
+                putAuthor(id, authorRepo.canonical(id, readString(in)));
+            }
+            int publisherCount = in.getInt();
+            for (int i = 0; i < publisherCount; i++) {
+                int id = in.getInt();
+                putPublisher(id, publisherRepo.canonical(id, readString(in)));
+            }
+
+            size = in.getInt();
+            int capacity = Math.max(16, size);
+            ids = readInts(in, size, capacity);
+            titleOffsets = readInts(in, size, capacity);
+            titleLengths = readInts(in, size, capacity);
+            authorOffsets = readInts(in, size, capacity);
+            authorCounts = readInts(in, size, capacity);
+            publisherIds = readInts(in, size, capacity);
+            statuses = new byte[capacity];
+            in.get(statuses, 0, size);
+            versions = readInts(in, size, capacity);
+            titleArenaUsed = in.getInt();
+            titleArena = new byte[Math.max(1024, titleArenaUsed)];
+            in.get(titleArena, 0, titleArenaUsed);
+            authorArenaUsed = in.getInt();
+            authorArena = readInts(in, authorArenaUsed, Math.max(64, authorArenaUsed));
+            titleGarbage = titleArenaUsed;
+            authorGarbage = authorArenaUsed;
+            for (int row = 0; row < size; row++) {
+                titleGarbage -= titleLengths[row];
+                authorGarbage -= authorCounts[row];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, int id, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(id);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, int length, int capacity) {
+        int[] values = new int[capacity];
+        in.asIntBuffer().get(values, 0, length);
+        in.position(in.position() + length * 4);
+        return values;
+    }
+
+    private Book toBook(int row) throws Exception {
+        List<Author> authors = new ArrayList<>(authorCounts[row]);
+        for (int i = authorOffsets[row]; i < authorOffsets[row] + authorCounts[row]; i++) {
+            authors.add(authorsById[authorArena[i]]);
+        }
+        Book book = new Book(title(row), authors, publishersById[publisherIds[row]]);
+        book.setId(ids[row]);
+        book.setBookStatus(STATUSES[statuses[row]]);
+        book.setPublisherId(publisherIds[row]);
+        book.setVersion(versions[row]);
+        return book;
+    }
+
+    private String title(int row) {
+        return new String(titleArena, titleOffsets[row], titleLengths[row], StandardCharsets.UTF_8);
+    }
+
+    private boolean containsIgnoreAsciiCase(int offset, int length, byte[] pattern) {
+        int last = offset + length - pattern.length;
+        for (int start = offset; start <= last; start++) {
+            int i = 0;
+            while (i < pattern.length && toLowerAscii(titleArena[start + i]) == pattern[i]) i++;
+            if (i == pattern.length) return true;
+        }
+        return false;
+    }
+
+    private static byte toLowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private int appendTitle(byte[] title) {
+        if (titleArenaUsed + title.length > titleArena.length)
+            titleArena = Arrays.copyOf(titleArena, Math.max(titleArenaUsed + title.length, titleArena.length * 2));
+        int offset = titleArenaUsed;
+        System.arraycopy(title, 0, titleArena, offset, title.length);
+        titleArenaUsed += title.length;
+        return offset;
+    }
+
+    private int appendAuthors(Integer[] authorIds) {
+        if (authorArenaUsed + authorIds.length > authorArena.length)
+            authorArena = Arrays.copyOf(authorArena, Math.max(authorArenaUsed + authorIds.length, authorArena.length * 2));
+        int offset = authorArenaUsed;
+        for (Integer authorId : authorIds) {
+            authorArena[authorArenaUsed++] = authorId;
+        }
+        return offset;
+    }
+
+    private void insertRow(int row) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            titleOffsets = Arrays.copyOf(titleOffsets, capacity);
+            titleLengths = Arrays.copyOf(titleLengths, capacity);
+            authorOffsets = Arrays.copyOf(authorOffsets, capacity);
+            authorCounts = Arrays.copyOf(authorCounts, capacity);
+            publisherIds = Arrays.copyOf(publisherIds, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        int tail = size - row;
+        if (tail > 0) {
+            System.arraycopy(ids, row, ids, row + 1, tail);
+            System.arraycopy(titleOffsets, row, titleOffsets, row + 1, tail);
+            System.arraycopy(titleLengths, row, titleLengths, row + 1, tail);
+            System.arraycopy(authorOffsets, row, authorOffsets, row + 1, tail);
+            System.arraycopy(authorCounts, row, authorCounts, row + 1, tail);
+            System.arraycopy(publisherIds, row, publisherIds, row + 1, tail);
+            System.arraycopy(statuses, row, statuses, row + 1, tail);
+            System.arraycopy(versions, row, versions, row + 1, tail);
+        }
+        size++;
+    }
+
+    private void deleteRow(int row) {
+        int tail = size - row - 1;
+        if (tail > 0) {
+            System.arraycopy(ids, row + 1, ids, row, tail);
+            System.arraycopy(titleOffsets, row + 1, titleOffsets, row, tail);
+            System.arraycopy(titleLengths, row + 1, titleLengths, row, tail);
+            System.arraycopy(authorOffsets, row + 1, authorOffsets, row, tail);
+            System.arraycopy(authorCounts, row + 1, authorCounts, row, tail);
+            System.arraycopy(publisherIds, row + 1, publisherIds, row, tail);
+            System.arraycopy(statuses, row + 1, statuses, row, tail);
+            System.arraycopy(versions, row + 1, versions, row, tail);
+        }
+        size--;
+    }
+
+    private void compactIfFragmented() {
+        if (titleGarbage > titleArenaUsed / 2 && titleGarbage > 4096) {
+            byte[] compacted = new byte[titleArenaUsed - titleGarbage];
+            int used = 0;
+            for (int row = 0; row < size; row++) {
+                System.arraycopy(titleArena, titleOffsets[row], compacted, used, titleLengths[row]);
+                titleOffsets[row] = used;
+                used += titleLengths[row];
+            }
+            titleArena = compacted;
+            titleArenaUsed = used;
+            titleGarbage = 0;
+        }
+        if (authorGarbage > authorArenaUsed / 2 && authorGarbage > 1024) {
+            int[] compacted = new int[authorArenaUsed - authorGarbage];
+            int used = 0;
+            for (int row = 0; row < size; row++) {
+                System.arraycopy(authorArena, authorOffsets[row], compacted, used, authorCounts[row]);
+                authorOffsets[row] = used;
+                used += authorCounts[row];
+            }
+            authorArena = compacted;
+            authorArenaUsed = used;
+            authorGarbage = 0;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package main.catalog;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class CompletionTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+
+    public void add(String text, long weight) {
+        String key = text.toLowerCase();
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+                path.add(node);
+            }
+            if (node.text == null) node.text = text;
+            node.references++;
+            node.weight += weight;
+            for (Node onPath : path) {
+                onPath.maxWeight = Math.max(onPath.maxWeight, node.weight);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addWeight(String text, long delta) {
+        String key = text.toLowerCase();
+        lock.writeLock().lock();
+        try {
+            List<Node> path = pathTo(key);
+            if (path == null || path.get(path.size() - 1).references == 0) return;
+            path.get(path.size() - 1).weight = Math.max(0, path.get(path.size() - 1).weight + delta);
+            recomputeMaxWeights(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String text, long weight) {
+        String key = text.toLowerCase();
+        lock.writeLock().lock();
+        try {
+            List<Node> path = pathTo(key);
+            if (path == null) return;
+            Node node = path.get(path.size() - 1);
+            if (node.references == 0) return;
+            node.weight = Math.max(0, node.weight - weight);
+            if (--node.references == 0) {
+                node.text = null;
+                node.weight = 0;
+            }
+            recomputeMaxWeights(path);
+            for (int i = path.size() - 1; i > 0; i--) {
+                Node child = path.get(i);
+                if (child.references > 0 || child.keys.length > 0) break;
+                path.get(i - 1).removeChild(key.charAt(i - 1));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        String key = prefix.toLowerCase();
+        List<String> completions = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            List<Node> path = pathTo(key);
+            if (path == null) return completions;
+            PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+            candidates.offer(new Candidate(path.get(path.size() - 1), false));
+            while (!candidates.isEmpty() && completions.size() < limit) {
+                Candidate candidate = candidates.poll();
+                Node node = candidate.node;
+                if (candidate.terminal) {
+                    completions.add(node.text);
+                    continue;
+                }
+                if (node.references > 0) candidates.offer(new Candidate(node, true));
+                for (Node child : node.children) {
+                    candidates.offer(new Candidate(child, false));
+                }
+            }
+            return completions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) return null;
+            path.add(node);
+        }
+        return path;
+    }
+
+    private void recomputeMaxWeights(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            long max = node.references > 0 ? node.weight : 0;
+            for (Node child : node.children) {
+                max = Math.max(max, child.maxWeight);
+            }
+            node.maxWeight = max;
+        }
+    }
+
+    private static class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private String text;
+        private int references;
+        private long weight;
+        private long maxWeight;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) return children[index];
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newKeys[index] = c;
+            newChildren[index] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) return;
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        private final Node node;
+        private final boolean terminal;
+
+        Candidate(Node node, boolean terminal) {
+            this.node = node;
+            this.terminal = terminal;
+        }
+
+        long priority() {
+            return terminal ? node.weight : node.maxWeight;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byPriority = Long.compare(other.priority(), priority());
+            if (byPriority != 0) return byPriority;
+            return Boolean.compare(other.terminal, terminal);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package main.catalog;
+
+import main.model.Author;
+import main.model.Book;
+import main.model.BookStatus;
+import main.repository.BookChangeListener;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class FuzzyTitleIndex implements BookChangeListener {
+    private static final float AUTHOR_WEIGHT = 0.5f;
+    private static final char BOUNDARY = '\u0000';
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private String[] terms = new String[64];
+    private IntList[] titleDocs = new IntList[64];
+    private IntList[] authorDocs = new IntList[64];
+    private int termCount;
+    private final Map<Integer, IntList> termsByGram = new HashMap<>();
+
+    private final Map<Integer, Integer> docsByBook = new HashMap<>();
+    private int[] books = new int[64];
+    private int[][] docTerms = new int[64][];
+    private int[] titleLengths = new int[64];
+    private int docCount;
+    private final IntList freeDocs = new IntList();
+
+    public static FuzzyTitleIndex build(ColumnarCatalog catalog) {
+        FuzzyTitleIndex index = new FuzzyTitleIndex();
+        catalog.forEachEntry((id, title, authorNames, status) -> index.add(id, title, authorNames));
+        return index;
+    }
+
+    public void add(int bookId, String title, List<String> authorNames) {
+        Set<String> titleTokens = new LinkedHashSet<>(tokenize(title));
+        Set<String> authorTokens = new LinkedHashSet<>();
+        for (String authorName : authorNames) {
+            authorTokens.addAll(tokenize(authorName));
+        }
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+            int doc = newDoc(bookId);
+            int[] termsOfDoc = new int[titleTokens.size() + authorTokens.size()];
+            int i = 0;
+            for (String token : titleTokens) {
+                int term = termFor(token);
+                titleDocs[term].add(doc);
+                termsOfDoc[i++] = term;
+            }
+            for (String token : authorTokens) {
+                int term = termFor(token);
+                authorDocs[term].add(doc);
+                termsOfDoc[i++] = term;
+            }
+            docTerms[doc] = termsOfDoc;
+            titleLengths[doc] = Math.max(1, titleTokens.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int bookId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(String query, int limit) {
+        List<String> queryTokens = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTokens.isEmpty() || limit < 1) return new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Scratch work = scratch.get();
+            work.ensureCapacity(termCount, docCount);
+            for (String token : queryTokens) {
+                scoreToken(token, work);
+                work.mergeTokenScores();
+            }
+            return topHits(work, queryTokens.size(), limit);
+        } finally {
+            scratch.get().reset();
+            lock.readLock().unlock();
+        }
+    }
+
+    public int slotCount() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book, Integer[] authorIds, int publisherId) {
+        List<String> authorNames = new ArrayList<>();
+        for (Author author : book.getAuthors()) {
+            authorNames.add(author.getName());
+        }
+        add(book.getId(), book.getName(), authorNames);
+    }
+
+    @Override
+    public void bookDeleted(int bookId) {
+        remove(bookId);
+    }
+
+    @Override
+    public void bookStatusChanged(int bookId, BookStatus status, int version) {
+    }
+
+    @Override
+    public void booksRetained(Set<Integer> bookIds) {
+        lock.writeLock().lock();
+        try {
+            for (Integer bookId : new ArrayList<>(docsByBook.keySet())) {
+                if (!bookIds.contains(bookId)) removeUnlocked(bookId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scoreToken(String token, Scratch work) {
+        int maxDistance = maxDistance(token);
+        if (maxDistance == 0) {
+            Integer term = termIds.get(token);
+            if (term != null) scoreTerm(term, 1f, work);
+            return;
+        }
+        int minShared = token.length() + 1 - 2 * maxDistance;
+        for (Map.Entry<Integer, Integer> gram : grams(token).entrySet()) {
+            IntList candidates = termsByGram.get(gram.getKey());
+            if (candidates == null) continue;
+            for (int i = 0; i < candidates.size; i += 2) {
+                int term = candidates.values[i];
+                if (work.gramCounts[term] == 0) work.touchTerm(term);
+                work.gramCounts[term] += Math.min(gram.getValue(), candidates.values[i + 1]);
+            }
+        }
+        for (int i = 0; i < work.touchedTermCount; i++) {
+            int term = work.touchedTerms[i];
+            String candidate = terms[term];
+            if (work.gramCounts[term] < Math.max(minShared, candidate.length() + 1 - 2 * maxDistance)) continue;
+            if (Math.abs(candidate.length() - token.length()) > maxDistance) continue;
+            int distance = boundedDistance(token, candidate, maxDistance);
+            if (distance > maxDistance) continue;
+            scoreTerm(term, 1f - (float) distance / Math.max(token.length(), candidate.length()), work);
+        }
+    }
+
+    private void scoreTerm(int term, float similarity, Scratch work) {
+        IntList docs = titleDocs[term];
+        for (int i = 0; i < docs.size; i++) work.offerTokenScore(docs.values[i], similarity);
+        docs = authorDocs[term];
+        for (int i = 0; i < docs.size; i++) work.offerTokenScore(docs.values[i], similarity * AUTHOR_WEIGHT);
+    }
+
+    private List<SearchHit> topHits(Scratch work, int queryTokenCount, int limit) {
+        PriorityQueue<SearchHit> heap = new PriorityQueue<>(limit + 1, SearchHit.BY_RELEVANCE.reversed());
+        for (int i = 0; i < work.touchedDocCount; i++) {
+            int doc = work.touchedDocs[i];
+            SearchHit hit = new SearchHit(books[doc], work.totals[doc] / queryTokenCount, titleLengths[doc]);
+            if (heap.size() < limit) heap.offer(hit);
+            else if (SearchHit.BY_RELEVANCE.compare(hit, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(hit);
+            }
+        }
+        List<SearchHit> hits = new ArrayList<>(heap);
+        hits.sort(SearchHit.BY_RELEVANCE);
+        return hits;
+    }
+
+    private int newDoc(int bookId) {
+        if (freeDocs.size > 0) {
+            int doc = freeDocs.values[--freeDocs.size];
+            books[doc] = bookId;
+            docsByBook.put(bookId, doc);
+            return doc;
+        }
+        if (docCount == books.length) {
+            int capacity = books.length * 2;
+            books = Arrays.copyOf(books, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+            titleLengths = Arrays.copyOf(titleLengths, capacity);
+        }
+        books[docCount] = bookId;
+        docsByBook.put(bookId, docCount);
+        return docCount++;
+    }
+
+    private void removeUnlocked(int bookId) {
+        Integer doc = docsByBook.remove(bookId);
+        if (doc == null) return;
+        for (int term : docTerms[doc]) {
+            titleDocs[term].remove(doc);
+            authorDocs[term].remove(doc);
+        }
+        docTerms[doc] = null;
+        freeDocs.add(doc);
+    }
+
+    private int termFor(String token) {
+        Integer existing = termIds.get(token);
+        if (existing != null) return existing;
+        if (termCount == terms.length) {
+            int capacity = terms.length * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            titleDocs = Arrays.copyOf(titleDocs, capacity);
+            authorDocs = Arrays.copyOf(authorDocs, capacity);
+        }
+        int term = termCount++;
+        terms[term] = token;
+        titleDocs[term] = new IntList();
+        authorDocs[term] = new IntList();
+        termIds.put(token, term);
+        for (Map.Entry<Integer, Integer> gram : grams(token).entrySet()) {
+            IntList postings = termsByGram.computeIfAbsent(gram.getKey(), g -> new IntList());
+            postings.add(term);
+            postings.add(gram.getValue());
+        }
+        return term;
+    }
+
+    private static Map<Integer, Integer> grams(String token) {
+        Map<Integer, Integer> grams = new HashMap<>();
+        char previous = BOUNDARY;
+        for (int i = 0; i < token.length(); i++) {
+            grams.merge(previous << 16 | token.charAt(i), 1, Integer::sum);
+            previous = token.charAt(i);
+        }
+        grams.merge(previous << 16 | BOUNDARY, 1, Integer::sum);
+        return grams;
+    }
+
+    static int maxDistance(String token) {
+        if (token.length() <= 3) return 0;
+        if (token.length() <= 6) return 1;
+        return 2;
+    }
+
+    static int boundedDistance(String a, String b, int bound) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) return bound + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static class IntList {
+        private int[] values = new int[1];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Scratch {
+        private int[] gramCounts = new int[0];
+        private int[] touchedTerms = new int[0];
+        private int touchedTermCount;
+        private float[] tokenScores = new float[0];
+        private float[] totals = new float[0];
+        private int[] tokenDocs = new int[0];
+        private int tokenDocCount;
+        private int[] touchedDocs = new int[0];
+        private int touchedDocCount;
+
+        void ensureCapacity(int terms, int docs) {
+            if (gramCounts.length < terms) {
+                gramCounts = new int[terms];
+                touchedTerms = new int[terms];
+            }
+            if (totals.length < docs) {
+                tokenScores = new float[docs];
+                totals = new float[docs];
+                tokenDocs = new int[docs];
+                touchedDocs = new int[docs];
+            }
+        }
+
+        void touchTerm(int term) {
+            touchedTerms[touchedTermCount++] = term;
+        }
+
+        void offerTokenScore(int doc, float score) {
+            if (tokenScores[doc] == 0f) tokenDocs[tokenDocCount++] = doc;
+            if (score > tokenScores[doc]) tokenScores[doc] = score;
+        }
+
+        void mergeTokenScores() {
+            for (int i = 0; i < tokenDocCount; i++) {
+                int doc = tokenDocs[i];
+                if (totals[doc] == 0f) touchedDocs[touchedDocCount++] = doc;
+                totals[doc] += tokenScores[doc];
+                tokenScores[doc] = 0f;
+            }
+            tokenDocCount = 0;
+            for (int i = 0; i < touchedTermCount; i++) gramCounts[touchedTerms[i]] = 0;
+            touchedTermCount = 0;
+        }
+
+        void reset() {
+            mergeTokenScores();
+            for (int i = 0; i < touchedDocCount; i++) totals[touchedDocs[i]] = 0f;
+            touchedDocCount = 0;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package main.catalog;
+
+import java.util.Comparator;
+
+public class SearchHit {
+    public static final Comparator<SearchHit> BY_RELEVANCE = Comparator.comparingDouble((SearchHit hit) -> -hit.score)
+            .thenComparingInt(hit -> hit.titleLength)
+            .thenComparingInt(hit -> hit.bookId);
+
+    private final int bookId;
+    private final float score;
+    private final int titleLength;
+
+    public SearchHit(int bookId, float score, int titleLength) {
+        this.bookId = bookId;
+        this.score = score;
+        this.titleLength = titleLength;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchHit{" +
+                "bookId=" + bookId +
+                ", score=" + score +
+                '}';
+    }
+}
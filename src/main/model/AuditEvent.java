@@ -0,0 +1,38 @@
+package main.model;
+
+import java.time.Instant;
+
+public class AuditEvent {
+    private final long timestamp;
+    private final String actor;
+    private final String action;
+    private final String subject;
+
+    public AuditEvent(long timestamp, String actor, String action, String subject) {
+        this.timestamp = timestamp;
+        this.actor = actor;
+        this.action = action;
+        this.subject = subject;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestamp) + "\t" + actor + "\t" + action + "\t" + subject;
+    }
+}
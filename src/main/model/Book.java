@@ -1,15 +1,26 @@
 package main.model;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class Book {
 
+    public enum Field {
+        NAME, AUTHORS, PUBLISHER, STATUS
+    }
+
     private int id;
     private String name;
     private List<Author> authors;
     private Publisher publisher;
     private BookStatus bookStatus;
+    private String branch;
+    private int version;
+    private int publisherId;
+    private final Set<Field> dirtyFields = EnumSet.noneOf(Field.class);
+    private volatile BookAssociations associations;
 
     public Book(String name, List<Author> authors, Publisher publisher) throws Exception {
         this.name = name;
@@ -19,6 +30,19 @@ public class Book {
         BookValidator.validate(this);
     }
 
+    private Book(int id, String name, BookStatus bookStatus, BookAssociations associations) throws Exception {
+        this.id = id;
+        this.name = name;
+        this.bookStatus = bookStatus;
+        this.associations = associations;
+        BookValidator.validate(this);
+    }
+
+    public static Book lazy(int id, String name, BookStatus bookStatus, BookAssociations associations) throws Exception {
+        if (associations == null) throw new Exception("Associations cant be null");
+        return new Book(id, name, bookStatus, associations);
+    }
+
     public boolean isAvailable() {
         return bookStatus.equals(BookStatus.AVAILABLE);
     }
@@ -39,14 +63,73 @@ public class Book {
         return bookStatus;
     }
 
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getPublisherId() {
+        return publisherId;
+    }
+
+    public void setPublisherId(int publisherId) {
+        this.publisherId = publisherId;
+    }
+
+    public Set<Field> getDirtyFields() {
+        return dirtyFields.isEmpty() ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(dirtyFields);
+    }
+
+    public boolean isDirty(Field field) {
+        return dirtyFields.contains(field);
+    }
+
+    public void clearDirty() {
+        dirtyFields.clear();
+    }
+
     public void issue() throws Exception {
         if (!isAvailable()) throw new Exception("Book is not available");
         bookStatus = BookStatus.ISSUED;
+        dirtyFields.add(Field.STATUS);
     }
 
     public void returned() throws Exception {
         if (isAvailable()) throw new Exception("Already same book Available");
         bookStatus = BookStatus.AVAILABLE;
+        dirtyFields.add(Field.STATUS);
+    }
+
+    public void rename(String name) throws Exception {
+        if (name == null || name.trim().length() < 1) throw new Exception("Book should have valid name");
+        if (name.equals(this.name)) return;
+        this.name = name;
+        dirtyFields.add(Field.NAME);
+    }
+
+    public void changeAuthors(List<Author> authors) throws Exception {
+        if (authors == null) throw new Exception("Authors cant be null");
+        if (authors.equals(getAuthors())) return;
+        this.authors = authors;
+        dirtyFields.add(Field.AUTHORS);
+    }
+
+    public void changePublisher(Publisher publisher) throws Exception {
+        if (publisher == null) throw new Exception("Publisher cant be null");
+        if (publisher.equals(getPublisher())) return;
+        this.publisher = publisher;
+        dirtyFields.add(Field.PUBLISHER);
     }
 
 
@@ -56,13 +139,35 @@ public class Book {
 
 
     public List<Author> getAuthors() {
+        resolveAssociations();
         return authors;
     }
 
     public Publisher getPublisher() {
+        resolveAssociations();
         return publisher;
     }
 
+    public boolean hasLoadedAssociations() {
+        return associations == null;
+    }
+
+    public void attachAssociations(List<Author> authors, Publisher publisher) {
+        this.authors = authors;
+        this.publisher = publisher;
+        associations = null;
+    }
+
+    private void resolveAssociations() {
+        BookAssociations pending = associations;
+        if (pending == null) return;
+        try {
+            pending.resolve(this);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not load authors and publisher of " + name, e);
+        }
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -71,41 +176,49 @@ public class Book {
 
         Book book = (Book) o;
 
-        if (id != book.id) return false;
-        if (!authors.equals(book.authors)) return false;
+        if (id != 0 || book.id != 0) return id == book.id;
+        if (!getAuthors().equals(book.getAuthors())) return false;
         if (bookStatus != book.bookStatus) return false;
         if (!name.equals(book.name)) return false;
-        if (!publisher.equals(book.publisher)) return false;
+        if (!getPublisher().equals(book.getPublisher())) return false;
 
         return true;
     }
 
     @Override
     public int hashCode() {
-        int result = id;
-        result = 31 * result + name.hashCode();
-        result = 31 * result + authors.hashCode();
-        result = 31 * result + publisher.hashCode();
+        if (id != 0) return id;
+        int result = name.hashCode();
+        result = 31 * result + getAuthors().hashCode();
+        result = 31 * result + getPublisher().hashCode();
         result = 31 * result + bookStatus.hashCode();
         return result;
     }
 
+    public String describe() {
+        resolveAssociations();
+        return toString();
+    }
+
     @Override
     public String toString() {
         return "Book{" +
                 "id='" + id + '\'' +
                 "name='" + name + '\'' +
-                ", authors=" + authors.stream().map(a -> a.getName()).collect(Collectors.joining(",")) +
-                ", publisher=" + publisher.getName() +
+                (hasLoadedAssociations()
+                        ? ", authors=" + authors.stream().map(a -> a.getName()).collect(Collectors.joining(",")) +
+                        ", publisher=" + publisher.getName()
+                        : "") +
                 ", status=" + bookStatus.toString() +
+                (branch == null ? "" : ", branch=" + branch) +
                 '}';
     }
 
     private static class BookValidator {
         public static void validate(Book book) throws Exception {
             if(book.name == null) throw new Exception("Book name cant be null");
-            if(book.authors == null) throw new Exception("Authors cant be null");
-            if(book.publisher == null) throw new Exception("Authors cant be null");
+            if(book.authors == null && book.associations == null) throw new Exception("Authors cant be null");
+            if(book.publisher == null && book.associations == null) throw new Exception("Publisher cant be null");
             if(book.bookStatus == null) throw new Exception("Book status cant be null");
             if(book.name.trim().length() < 1) throw new Exception("Book should have valid name");
         }
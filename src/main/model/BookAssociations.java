@@ -0,0 +1,5 @@
+package main.model;
+
+public interface BookAssociations {
+    void resolve(Book book) throws Exception;
+}
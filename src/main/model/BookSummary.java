@@ -0,0 +1,48 @@
+package main.model;
+
+public class BookSummary {
+    private final int id;
+    private final String name;
+    private final BookStatus bookStatus;
+    private String branch;
+
+    public BookSummary(int id, String name, BookStatus bookStatus) {
+        this.id = id;
+        this.name = name;
+        this.bookStatus = bookStatus;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BookStatus getBookStatus() {
+        return bookStatus;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public boolean isAvailable() {
+        return bookStatus == BookStatus.AVAILABLE;
+    }
+
+    @Override
+    public String toString() {
+        return "BookSummary{" +
+                "id='" + id + '\'' +
+                "name='" + name + '\'' +
+                ", status=" + bookStatus +
+                (branch == null ? "" : ", branch=" + branch) +
+                '}';
+    }
+}
@@ -25,6 +25,10 @@ public enum Permission {
         }
     }
 
+    public int getValue() {
+        return value;
+    }
+
     public static Permission valueOf(int value) {
         return valueToPermissionMap.get(value);
     }
@@ -71,6 +71,10 @@ public class Reading {
         return returnedDate;
     }
 
+    public void setReturnedDate(Date returnedDate) {
+        this.returnedDate = returnedDate;
+    }
+
     @Override
     public String toString() {
         return "Reading{" +
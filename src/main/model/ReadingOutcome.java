@@ -0,0 +1,46 @@
+package main.model;
+
+public class ReadingOutcome {
+    private final Book book;
+    private final Reading reading;
+    private final String message;
+
+    private ReadingOutcome(Book book, Reading reading, String message) {
+        this.book = book;
+        this.reading = reading;
+        this.message = message;
+    }
+
+    public static ReadingOutcome success(Reading reading) {
+        return new ReadingOutcome(reading.getBook(), reading, null);
+    }
+
+    public static ReadingOutcome failure(Book book, String message) {
+        return new ReadingOutcome(book, null, message);
+    }
+
+    public boolean isSuccessful() {
+        return reading != null;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public Reading getReading() {
+        return reading;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadingOutcome{" +
+                "book='" + (book == null ? null : book.getName()) + '\'' +
+                ", successful=" + isSuccessful() +
+                (message == null ? "" : ", message='" + message + '\'') +
+                '}';
+    }
+}
@@ -0,0 +1,52 @@
+package main.model;
+
+import java.util.Date;
+
+public class Reservation {
+    private int id;
+    private String username;
+    private int bookId;
+    private String title;
+    private Date reservedDate;
+
+    public Reservation(String username, int bookId, String title, Date reservedDate) {
+        this.username = username;
+        this.bookId = bookId;
+        this.title = title;
+        this.reservedDate = reservedDate;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Date getReservedDate() {
+        return reservedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation{" +
+                "username='" + username + '\'' +
+                ", bookId=" + bookId +
+                ", title='" + title + '\'' +
+                ", reservedDate=" + reservedDate +
+                '}';
+    }
+}
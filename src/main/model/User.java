@@ -3,6 +3,7 @@ package main.model;
 import java.util.List;
 
 public class User {
+    private int id;
     private String username;
     private List<Permission> permissions;
 
@@ -15,10 +16,24 @@ public class User {
         return permissions.contains(permission);
     }
 
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getUsername() {
         return username;
     }
 
+    public User withId(int id) {
+        User user = new User(username, permissions);
+        user.setId(id);
+        return user;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,7 @@
+package main.repository;
+
+import java.util.Date;
+
+public interface ActiveLoanHandler {
+    void handle(int bookId, String username, int publisherId, String publisherName, Date dueDate);
+}
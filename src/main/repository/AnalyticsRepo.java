@@ -0,0 +1,78 @@
+package main.repository;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AnalyticsRepo {
+    static final String BORROWS = "borrows";
+
+    private final Connection connection;
+
+    public AnalyticsRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists circulation_stat(metric text not null, key text not null, value bigint not null, primary key(metric,key))");
+    }
+
+    public Map<String, Long> findBorrowCounts() throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select key,value from circulation_stat where metric=?");
+        statement.setString(1, BORROWS);
+        ResultSet resultSet = statement.executeQuery();
+        Map<String, Long> counts = new HashMap<>();
+        while (resultSet.next()) {
+            counts.put(resultSet.getString("key"), resultSet.getLong("value"));
+        }
+        if (counts.isEmpty()) return countBorrowsFromReadings();
+        return counts;
+    }
+
+    private Map<String, Long> countBorrowsFromReadings() throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select b.name,count(*) from reading r join book b on b.id=r.book_id group by b.name");
+        Map<String, Long> counts = new HashMap<>();
+        while (resultSet.next()) {
+            counts.put(resultSet.getString(1), resultSet.getLong(2));
+        }
+        return counts;
+    }
+
+    public void saveBorrowCounts(Map<String, Long> counts) throws SQLException {
+        String sql = "insert into circulation_stat(metric,key,value) values(?,?,?) on conflict (metric,key) do update set value=excluded.value";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            statement.setString(1, BORROWS);
+            statement.setString(2, count.getKey());
+            statement.setLong(3, count.getValue());
+            statement.addBatch();
+        }
+        statement.executeBatch();
+    }
+
+    public Map<Integer, String> findPublisherNames(Collection<Integer> ids) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select id,name from publisher where id = any(?)");
+        statement.setArray(1, connection.createArrayOf("int", ids.toArray()));
+        ResultSet resultSet = statement.executeQuery();
+        Map<Integer, String> names = new HashMap<>();
+        while (resultSet.next()) {
+            names.put(resultSet.getInt(1), resultSet.getString(2));
+        }
+        return names;
+    }
+
+    public void forEachActiveLoan(ActiveLoanHandler handler) throws SQLException {
+        String sql = "select r.book_id,u.username,p.id,p.name,r.due_date from reading r join \"user\" u on u.id=r.user_id " +
+                "join book b on b.id=r.book_id join publisher p on p.id=b.publisher_id where r.returned_date is null";
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery(sql);
+        while (resultSet.next()) {
+            handler.handle(resultSet.getInt(1), resultSet.getString(2), resultSet.getInt(3), resultSet.getString(4),
+                    new java.util.Date(resultSet.getDate(5).getTime()));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package main.repository;
+
+import main.model.AuditEvent;
+
+import java.sql.*;
+import java.util.List;
+
+public class AuditRepo implements AuditSink {
+    private final Connection connection;
+
+    public AuditRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists audit_log(id bigserial primary key, logged_at timestamp not null, actor text, action text not null, subject text)");
+    }
+
+    @Override
+    public void write(List<AuditEvent> events) throws SQLException {
+        String sql = "insert into audit_log(logged_at,actor,action,subject) values(?,?,?,?)";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (AuditEvent event : events) {
+            statement.setTimestamp(1, new Timestamp(event.getTimestamp()));
+            statement.setString(2, event.getActor());
+            statement.setString(3, event.getAction());
+            statement.setString(4, event.getSubject());
+            statement.addBatch();
+        }
+        statement.executeBatch();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        connection.close();
+    }
+}
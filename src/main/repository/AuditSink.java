@@ -0,0 +1,11 @@
+package main.repository;
+
+import main.model.AuditEvent;
+
+import java.util.List;
+
+public interface AuditSink {
+    void write(List<AuditEvent> events) throws Exception;
+
+    void close() throws Exception;
+}
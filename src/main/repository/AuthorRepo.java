@@ -1,27 +1,71 @@
 package main.repository;
 
 import main.model.Author;
+import main.util.Interner;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AuthorRepo {
 
     private final Connection connection;
 
+    private final Interner<Author> authors;
+
     public AuthorRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        this(dataSource, new Interner<Author>());
+    }
+
+    public AuthorRepo(BaseDataSource dataSource, Interner<Author> authors) throws SQLException, ClassNotFoundException {
         connection = dataSource.getConnection();
+        this.authors = authors;
     }
 
-    public int save(String author) throws SQLException {
+    public Author canonical(int id, String name) {
+        Author author = authors.get(id);
+        if (author != null && author.getName().equals(name)) return author;
+        return authors.intern(id, new Author(name));
+    }
+
+    public void installNameConstraint() throws SQLException {
         Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select to_regclass('author_name_key') is not null");
+        if (resultSet.next() && resultSet.getBoolean(1)) return;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            statement.execute("lock table author in share row exclusive mode");
+            statement.execute("create temp table duplicate_author on commit drop as select id, keep from " +
+                    "(select id, min(id) over (partition by name) as keep from author) ranked where id <> keep");
+            statement.executeUpdate("update book set version = version + 1, author_ids = (select array_agg(coalesce(d.keep, a.id) order by a.ord) from unnest(book.author_ids) with ordinality a(id, ord) left join duplicate_author d on d.id = a.id) where author_ids && (select array_agg(id) from duplicate_author)");
+            statement.executeUpdate("delete from author where id in (select id from duplicate_author)");
+            statement.execute("create unique index if not exists author_name_key on author(name)");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public Interner<Author> getAuthorRegistry() {
+        return authors;
+    }
+
+    public int save(String author) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("insert into author(name) values(?) returning id");
+        statement.setString(1, author);
         int id = -1;
-        String sql = "insert into author(name) values('" + author + "')";
-        statement.executeUpdate(sql);
-        sql = "select last_value from author_id_seq";
-        ResultSet resultSet = statement.executeQuery(sql);
+        ResultSet resultSet = statement.executeQuery();
         if (resultSet.next()) {
             id = resultSet.getInt(1);
         }
@@ -29,9 +73,9 @@ public class AuthorRepo {
     }
 
     public int findIdByName(String authorName) throws SQLException {
-        Statement statement = connection.createStatement();
-        String sql = "select id from author where name='" + authorName + "'";
-        ResultSet resultSet = statement.executeQuery(sql);
+        PreparedStatement statement = connection.prepareStatement("select id from author where lower(name)=lower(?) order by id limit 1");
+        statement.setString(1, authorName);
+        ResultSet resultSet = statement.executeQuery();
         int id = -1;
         if (resultSet.next()) {
             id = resultSet.getInt(1);
@@ -40,13 +84,46 @@ public class AuthorRepo {
     }
 
     public Author findById(Integer authorId) throws SQLException {
+        Author cached = authors.get(authorId);
+        if (cached != null) return cached;
         Statement statement = connection.createStatement();
         String sql = "select name from author where id=" + authorId;
         ResultSet resultSet = statement.executeQuery(sql);
         Author author = null;
         if (resultSet.next()) {
-            author = new Author(resultSet.getString("name"));
+            author = canonical(authorId, resultSet.getString("name"));
         }
         return author;
     }
+
+    public Map<Integer, Author> findByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Author> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Author cached = authors.get(id);
+            if (cached != null) found.put(id, cached);
+            else missing.add(id);
+        }
+        if (missing.isEmpty()) return found;
+        PreparedStatement statement = connection.prepareStatement("select id,name from author where id = any(?)");
+        statement.setArray(1, connection.createArrayOf("int", missing.toArray()));
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+            int id = resultSet.getInt("id");
+            found.put(id, canonical(id, resultSet.getString("name")));
+        }
+        return found;
+    }
+
+    public Map<Integer, Author> findAll() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery("select id,name from author");
+        Map<Integer, Author> all = new HashMap<>();
+        while (resultSet.next()) {
+            int id = resultSet.getInt("id");
+            all.put(id, canonical(id, resultSet.getString("name")));
+        }
+        return all;
+    }
 }
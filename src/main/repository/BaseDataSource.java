@@ -29,6 +29,10 @@ public class BaseDataSource {
         return connection;
     }
 
+    public Connection getReadConnection(Connection writeConnection) throws ClassNotFoundException, SQLException {
+        return writeConnection;
+    }
+
     public void setAutoCommit(boolean autoCommit) throws SQLException {
         if (connection != null) connection.setAutoCommit(false);
 
@@ -0,0 +1,25 @@
+package main.repository;
+
+public class BookChange {
+    private final long seq;
+    private final int bookId;
+    private final boolean deleted;
+
+    public BookChange(long seq, int bookId, boolean deleted) {
+        this.seq = seq;
+        this.bookId = bookId;
+        this.deleted = deleted;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+}
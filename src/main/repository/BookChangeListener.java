@@ -0,0 +1,16 @@
+package main.repository;
+
+import main.model.Book;
+import main.model.BookStatus;
+
+import java.util.Set;
+
+public interface BookChangeListener {
+    void bookSaved(Book book, Integer[] authorIds, int publisherId);
+
+    void bookDeleted(int bookId);
+
+    void bookStatusChanged(int bookId, BookStatus status, int version);
+
+    void booksRetained(Set<Integer> bookIds);
+}
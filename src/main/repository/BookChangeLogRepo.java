@@ -0,0 +1,73 @@
+package main.repository;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BookChangeLogRepo {
+    private final Connection connection;
+
+    public BookChangeLogRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists book_change(seq bigserial primary key, book_id int not null, op char(1) not null, changed_at timestamp not null default now())");
+        statement.executeUpdate("alter table book_change add column if not exists txid bigint not null default txid_current()");
+        statement.executeUpdate("create index if not exists book_change_txid on book_change(txid)");
+        statement.executeUpdate("create table if not exists book_change_horizon(id int primary key, txid bigint not null)");
+        statement.executeUpdate("insert into book_change_horizon values(1,0) on conflict do nothing");
+        statement.executeUpdate("create or replace function log_book_change() returns trigger as $$ begin " +
+                "if TG_OP = 'DELETE' then insert into book_change(book_id,op) values(old.id,'D'); return old; end if; " +
+                "insert into book_change(book_id,op) values(new.id,substr(TG_OP,1,1)); return new; end $$ language plpgsql");
+        statement.executeUpdate("drop trigger if exists book_change_log on book");
+        statement.executeUpdate("create trigger book_change_log after insert or update or delete on book for each row execute procedure log_book_change()");
+    }
+
+    public long currentWatermark() throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select txid_snapshot_xmin(txid_current_snapshot())");
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+    }
+
+    public long horizon() throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select txid from book_change_horizon where id=1");
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+    }
+
+    public List<BookChange> findSince(long watermark) throws SQLException {
+        String sql = "select seq,book_id,op from book_change where txid>=? order by seq";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setLong(1, watermark);
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery();
+        List<BookChange> changes = new ArrayList<>();
+        while (resultSet.next()) {
+            changes.add(new BookChange(resultSet.getLong("seq"), resultSet.getInt("book_id"), "D".equals(resultSet.getString("op"))));
+        }
+        return changes;
+    }
+
+    public int purgeOlderThan(long retentionMillis) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement statement = connection.prepareStatement("with purged as " +
+                    "(delete from book_change where changed_at < now() - ? * interval '1 millisecond' returning txid) " +
+                    "update book_change_horizon set txid = greatest(txid, (select max(txid) + 1 from purged)) " +
+                    "where id=1 returning (select count(*) from purged)");
+            statement.setLong(1, retentionMillis);
+            ResultSet resultSet = statement.executeQuery();
+            int purged = resultSet.next() ? resultSet.getInt(1) : 0;
+            connection.commit();
+            return purged;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
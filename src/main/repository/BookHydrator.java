@@ -0,0 +1,212 @@
+package main.repository;
+
+import main.model.Author;
+import main.model.Book;
+import main.model.BookAssociations;
+import main.model.BookStatus;
+import main.model.Publisher;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+public class BookHydrator {
+    private final AuthorRepo authorRepo;
+    private final PublisherRepo publisherRepo;
+    private final BlockingQueue<Lane> lanes;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private volatile boolean lazy;
+
+    public BookHydrator(AuthorRepo authorRepo, PublisherRepo publisherRepo) {
+        this.authorRepo = authorRepo;
+        this.publisherRepo = publisherRepo;
+        this.lanes = null;
+        this.executor = null;
+        this.batchSize = Integer.MAX_VALUE;
+    }
+
+    public BookHydrator(BaseDataSource dataSource, AuthorRepo authorRepo, PublisherRepo publisherRepo, int parallelism, int batchSize)
+            throws SQLException, ClassNotFoundException {
+        this.authorRepo = authorRepo;
+        this.publisherRepo = publisherRepo;
+        this.batchSize = batchSize;
+        this.lanes = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            lanes.add(new Lane(new AuthorRepo(dataSource, authorRepo.getAuthorRegistry()),
+                    new PublisherRepo(dataSource, publisherRepo.getPublisherRegistry())));
+        }
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "book-hydrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public List<Book> hydrate(List<Row> rows) throws Exception {
+        List<Book> books = LazyBatch.of(this, rows);
+        if (!lazy) attach(rows, books);
+        return books;
+    }
+
+    private void attach(List<Row> rows, List<Book> books) throws Exception {
+        Set<Integer> authorIds = new LinkedHashSet<>();
+        Set<Integer> publisherIds = new LinkedHashSet<>();
+        for (Row row : rows) {
+            authorIds.addAll(Arrays.asList(row.authorIds));
+            publisherIds.add(row.publisherId);
+        }
+        Map<Integer, Author> authors;
+        Map<Integer, Publisher> publishers;
+        List<Integer> missingAuthors = missing(authorIds, authorRepo.getAuthorRegistry()::get);
+        List<Integer> missingPublishers = missing(publisherIds, publisherRepo.getPublisherRegistry()::get);
+        if (executor == null || missingAuthors.size() + missingPublishers.size() <= batchSize) {
+            authors = authorRepo.findByIds(authorIds);
+            publishers = publisherRepo.findByIds(publisherIds);
+        } else {
+            List<Future<Map<Integer, Author>>> authorBatches = new ArrayList<>();
+            for (List<Integer> batch : partition(missingAuthors)) {
+                authorBatches.add(executor.submit(() -> onLane(lane -> lane.authorRepo.findByIds(batch))));
+            }
+            List<Future<Map<Integer, Publisher>>> publisherBatches = new ArrayList<>();
+            for (List<Integer> batch : partition(missingPublishers)) {
+                publisherBatches.add(executor.submit(() -> onLane(lane -> lane.publisherRepo.findByIds(batch))));
+            }
+            authors = authorRepo.findByIds(without(authorIds, missingAuthors));
+            for (Future<Map<Integer, Author>> batch : authorBatches) {
+                authors.putAll(await(batch));
+            }
+            publishers = publisherRepo.findByIds(without(publisherIds, missingPublishers));
+            for (Future<Map<Integer, Publisher>> batch : publisherBatches) {
+                publishers.putAll(await(batch));
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            List<Author> bookAuthors = new ArrayList<>(row.authorIds.length);
+            for (Integer authorId : row.authorIds) {
+                bookAuthors.add(authors.get(authorId));
+            }
+            books.get(i).attachAssociations(bookAuthors, publishers.get(row.publisherId));
+        }
+    }
+
+    public void close() {
+        if (executor != null) executor.shutdown();
+    }
+
+    private <T> T onLane(LaneCall<T> call) throws Exception {
+        Lane lane = lanes.take();
+        try {
+            return call.call(lane);
+        } finally {
+            lanes.put(lane);
+        }
+    }
+
+    private List<List<Integer>> partition(List<Integer> ids) {
+        List<List<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    private static List<Integer> missing(Set<Integer> ids, IntFunction<?> cache) {
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            if (cache.apply(id) == null) missing.add(id);
+        }
+        return missing;
+    }
+
+    private static Set<Integer> without(Set<Integer> ids, List<Integer> excluded) {
+        Set<Integer> remaining = new LinkedHashSet<>(ids);
+        remaining.removeAll(excluded);
+        return remaining;
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    private static class LazyBatch implements BookAssociations {
+        private final BookHydrator hydrator;
+        private final List<Row> rows;
+        private final List<Book> books;
+
+        private LazyBatch(BookHydrator hydrator, List<Row> rows) {
+            this.hydrator = hydrator;
+            this.rows = rows;
+            this.books = new ArrayList<>(rows.size());
+        }
+
+        static List<Book> of(BookHydrator hydrator, List<Row> rows) throws Exception {
+            LazyBatch batch = new LazyBatch(hydrator, new ArrayList<>(rows));
+            for (Row row : rows) {
+                Book book = Book.lazy(row.id, row.name, row.status, batch);
+                book.setVersion(row.version);
+                book.setPublisherId(row.publisherId);
+                batch.books.add(book);
+            }
+            return new ArrayList<>(batch.books);
+        }
+
+        @Override
+        public synchronized void resolve(Book book) throws Exception {
+            if (book.hasLoadedAssociations()) return;
+            hydrator.attach(rows, books);
+        }
+    }
+
+    private interface LaneCall<T> {
+        T call(Lane lane) throws Exception;
+    }
+
+    private static class Lane {
+        private final AuthorRepo authorRepo;
+        private final PublisherRepo publisherRepo;
+
+        Lane(AuthorRepo authorRepo, PublisherRepo publisherRepo) {
+            this.authorRepo = authorRepo;
+            this.publisherRepo = publisherRepo;
+        }
+    }
+
+    public static class Row {
+        private final int id;
+        private final String name;
+        private final Integer[] authorIds;
+        private final int publisherId;
+        private final BookStatus status;
+        private final int version;
+
+        public Row(int id, String name, Integer[] authorIds, int publisherId, BookStatus status) {
+            this(id, name, authorIds, publisherId, status, 0);
+        }
+
+        public Row(int id, String name, Integer[] authorIds, int publisherId, BookStatus status, int version) {
+            this.id = id;
+            this.name = name;
+            this.authorIds = authorIds;
+            this.publisherId = publisherId;
+            this.status = status;
+            this.version = version;
+        }
+    }
+}
@@ -3,68 +3,314 @@ package main.repository;
 import main.model.Author;
 import main.model.Book;
 import main.model.BookStatus;
+import main.model.BookSummary;
 import main.model.Publisher;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class BookRepo {
     private Connection connection;
+    private Connection readConnection;
     private PublisherRepo publisherRepo;
     private AuthorRepo authorRepo;
+    private final List<BookChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private InvalidationBus invalidationBus;
+    private BookHydrator hydrator;
+    private volatile boolean nameConstraintsInstalled;
+    private volatile boolean lazyAssociations = true;
+
+    private static final String RESOLVE_AUTHORS = "names(name, ord) as (select * from unnest(?::varchar[]) with ordinality), " +
+            "new_authors as (insert into author(name) select distinct name from names on conflict (name) do nothing returning id, name), " +
+            "resolved_authors as (select array_agg(coalesce(n.id, a.id) order by names.ord) as ids, " +
+            "bool_and(coalesce(n.id, a.id) is not null) as complete from names " +
+            "left join new_authors n on n.name = names.name left join author a on a.name = names.name)";
+    private static final String RESOLVE_PUBLISHER = "new_publisher as (insert into publisher(name) values(?) on conflict (name) do nothing returning id), " +
+            "resolved_publisher as (select coalesce((select id from new_publisher), (select id from publisher where name = ?)) as id)";
+    private static final String INSERT_SQL = "with " + RESOLVE_AUTHORS + ", " + RESOLVE_PUBLISHER + " " +
+            "insert into book(name,author_ids,publisher_id,status) select ?, ra.ids, rp.id, ? from resolved_authors ra, resolved_publisher rp " +
+            "where ra.complete and rp.id is not null returning id, author_ids, publisher_id, version";
+    private static final String COLUMNS = "id,name,author_ids,publisher_id,status,version";
 
     public BookRepo(BaseDataSource dataSource, PublisherRepo publisherRepo, AuthorRepo authorRepo) throws SQLException, ClassNotFoundException {
         connection = dataSource.getConnection();
+        readConnection = dataSource.getReadConnection(connection);
         this.publisherRepo = publisherRepo;
         this.authorRepo = authorRepo;
+        this.hydrator = new BookHydrator(authorRepo, publisherRepo);
+        hydrator.setLazy(lazyAssociations);
     }
 
-    public Book save(Book book) throws SQLException {
+    public void addListener(BookChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BookChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setHydrator(BookHydrator hydrator) {
+        hydrator.setLazy(lazyAssociations);
+        this.hydrator = hydrator;
+    }
+
+    public void setLazyAssociations(boolean lazyAssociations) {
+        this.lazyAssociations = lazyAssociations;
+        hydrator.setLazy(lazyAssociations);
+    }
+
+    public void setInvalidationBus(InvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
 
-        Integer[] authorIds = populateAuthorIds(book.getAuthors());
-        int publisherId = populatePublisherId(book.getPublisher());
-
-        String sql = "insert into book(name,author_ids,publisher_id,status) values(?,?,?,?)";
-        PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-        statement.setString(1, book.getName());
-        statement.setArray(2, connection.createArrayOf("int", authorIds));
-        statement.setInt(3, publisherId);
-        statement.setString(4, book.getBookStatus().toString());
-        int insertedId = statement.executeUpdate();
-        book.setId(insertedId);
+    public Book save(Book book) throws SQLException {
+        ensureNameConstraints();
+        ResultSet resultSet = execute(INSERT_SQL, book, true, true, (statement, index) -> {
+            statement.setString(index, book.getName());
+            statement.setString(index + 1, book.getBookStatus().toString());
+        });
+        if (resultSet == null) throw new SQLException("Could not resolve authors and publisher of " + book.getName());
+        book.setId(resultSet.getInt("id"));
+        book.setVersion(resultSet.getInt("version"));
+        book.clearDirty();
+        Integer[] authorIds = (Integer[]) resultSet.getArray("author_ids").getArray();
+        int publisherId = resultSet.getInt("publisher_id");
+        book.setPublisherId(publisherId);
+        for (BookChangeListener listener : listeners) {
+            listener.bookSaved(book, authorIds, publisherId);
+        }
+        publish(Invalidation.Type.BOOK, book.getId(), null);
         return book;
     }
 
     public boolean update(Book book) throws SQLException {
-        Integer[] authorIds = populateAuthorIds(book.getAuthors());
-        int publisherId = populatePublisherId(book.getPublisher());
-        Array authorIdsSql = connection.createArrayOf("int", authorIds);
+        Set<Book.Field> dirty = book.getDirtyFields();
+        if (dirty.isEmpty()) return true;
+        ensureNameConstraints();
+        ResultSet resultSet = execute(updateSql(dirty), book, dirty.contains(Book.Field.AUTHORS), dirty.contains(Book.Field.PUBLISHER),
+                (statement, index) -> {
+                    if (dirty.contains(Book.Field.NAME)) statement.setString(index++, book.getName());
+                    if (dirty.contains(Book.Field.STATUS)) statement.setString(index++, book.getBookStatus().toString());
+                    statement.setInt(index++, book.getId());
+                    statement.setInt(index, book.getVersion());
+                });
+        if (resultSet == null) {
+            int currentVersion = findVersion(book.getId());
+            if (currentVersion != -1 && currentVersion != book.getVersion())
+                throw new StaleBookException(book.getId(), book.getVersion(), currentVersion);
+            return false;
+        }
+        book.setVersion(resultSet.getInt("version"));
+        book.clearDirty();
+        if (dirty.size() == 1 && dirty.contains(Book.Field.STATUS)) {
+            statusChanged(book.getId(), book.getBookStatus(), book.getVersion());
+            return true;
+        }
+        Integer[] authorIds = (Integer[]) resultSet.getArray("author_ids").getArray();
+        int publisherId = resultSet.getInt("publisher_id");
+        book.setPublisherId(publisherId);
+        for (BookChangeListener listener : listeners) {
+            listener.bookSaved(book, authorIds, publisherId);
+        }
+        publish(Invalidation.Type.BOOK, book.getId(), null);
+        return true;
+    }
 
-        String sql = "update book set name=? ,author_ids=? , publisher_id=?,status=? where id=?";
-        PreparedStatement statement = connection.prepareStatement(sql);
+    private static String updateSql(Set<Book.Field> dirty) {
+        List<String> resolvers = new ArrayList<>();
+        List<String> assignments = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (dirty.contains(Book.Field.AUTHORS)) {
+            resolvers.add(RESOLVE_AUTHORS);
+            assignments.add("author_ids=ra.ids");
+            sources.add("resolved_authors ra");
+            conditions.add("ra.complete");
+        }
+        if (dirty.contains(Book.Field.PUBLISHER)) {
+            resolvers.add(RESOLVE_PUBLISHER);
+            assignments.add("publisher_id=rp.id");
+            sources.add("resolved_publisher rp");
+            conditions.add("rp.id is not null");
+        }
+        if (dirty.contains(Book.Field.NAME)) assignments.add(0, "name=?");
+        if (dirty.contains(Book.Field.STATUS)) assignments.add("status=?");
+        assignments.add("version=book.version+1");
+        conditions.add(0, "book.id=? and book.version=?");
+        return (resolvers.isEmpty() ? "" : "with " + String.join(", ", resolvers) + " ") +
+                "update book set " + String.join(", ", assignments) +
+                (sources.isEmpty() ? "" : " from " + String.join(", ", sources)) +
+                " where " + String.join(" and ", conditions) +
+                " returning book.id, book.author_ids, book.publisher_id, book.version";
+    }
+
+    private ResultSet execute(String sql, Book book, boolean resolveAuthors, boolean resolvePublisher, StatementBinder binder) throws SQLException {
+        String[] authorNames = resolveAuthors ? new String[book.getAuthors().size()] : new String[0];
+        for (int i = 0; i < authorNames.length; i++) {
+            authorNames[i] = book.getAuthors().get(i).getName();
+        }
+        int attempts = resolveAuthors || resolvePublisher ? 2 : 1;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            int index = 1;
+            if (resolveAuthors) statement.setArray(index++, connection.createArrayOf("varchar", authorNames));
+            if (resolvePublisher) {
+                statement.setString(index++, book.getPublisher().getName());
+                statement.setString(index++, book.getPublisher().getName());
+            }
+            binder.bind(statement, index);
+            ResultSet resultSet = statement.executeQuery();
+            if (resultSet.next()) return resultSet;
+        }
+        return null;
+    }
+
+    private int findVersion(int id) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select version from book where id=?");
+        statement.setInt(1, id);
+        ResultSet resultSet = statement.executeQuery();
+        return resultSet.next() ? resultSet.getInt(1) : -1;
+    }
+
+    public void installSchema() throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(
+                "select count(*) from information_schema.columns where table_name='book' and column_name='version'");
+        ResultSet resultSet = statement.executeQuery();
+        if (!resultSet.next() || resultSet.getInt(1) == 0)
+            connection.createStatement().executeUpdate("alter table book add column if not exists version int not null default 0");
+    }
 
-        statement.setString(1, book.getName());
-        statement.setArray(2, authorIdsSql);
-        statement.setInt(3, publisherId);
-        statement.setString(4, book.getBookStatus().toString());
-        statement.setInt(5, book.getId());
+    private void ensureNameConstraints() throws SQLException {
+        if (nameConstraintsInstalled) return;
+        authorRepo.installNameConstraint();
+        publisherRepo.installNameConstraint();
+        nameConstraintsInstalled = true;
+    }
 
-        return statement.executeUpdate() > 0;
+    private interface StatementBinder {
+        void bind(PreparedStatement statement, int index) throws SQLException;
     }
 
     public boolean delete(Book book) throws SQLException {
         String sql = "delete from book where id=?";
         PreparedStatement statement = connection.prepareStatement(sql);
         statement.setInt(1, book.getId());
-        int returnCode = statement.executeUpdate(sql);
+        int returnCode = statement.executeUpdate();
+        if (returnCode == 1) {
+            for (BookChangeListener listener : listeners) {
+                listener.bookDeleted(book.getId());
+            }
+            publish(Invalidation.Type.BOOK, book.getId(), null);
+        }
         return returnCode == 1;
     }
 
-    public Book findByName(String bookname) throws SQLException {
-        String sql = "select id,name,author_ids,publisher_id,status from book where lower(name)=?";
+    void statusChanged(int bookId, BookStatus status, int version) {
+        for (BookChangeListener listener : listeners) {
+            listener.bookStatusChanged(bookId, status, version);
+        }
+        if (invalidationBus != null) invalidationBus.publish(Invalidation.Type.BOOK_STATUS, bookId, status, version);
+    }
+
+    public void applyInvalidation(Invalidation invalidation) throws Exception {
+        if (invalidation.getType() == Invalidation.Type.RESERVATION) return;
+        if (invalidation.getType() == Invalidation.Type.ALL) {
+            resynchronize();
+            return;
+        }
+        if (invalidation.getType() == Invalidation.Type.BOOK_STATUS) {
+            for (BookChangeListener listener : listeners) {
+                listener.bookStatusChanged(invalidation.getBookId(), invalidation.getStatus(), invalidation.getVersion());
+            }
+            return;
+        }
+        String sql = "select " + COLUMNS + " from book where id=?";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setInt(1, invalidation.getBookId());
+        ResultSet resultSet = statement.executeQuery();
+        if (!resultSet.next()) {
+            for (BookChangeListener listener : listeners) {
+                listener.bookDeleted(invalidation.getBookId());
+            }
+            return;
+        }
+        Book book = buildBookFromResultSet(resultSet);
+        Integer[] authorIds = (Integer[]) resultSet.getArray("author_ids").getArray();
+        int publisherId = resultSet.getInt("publisher_id");
+        for (BookChangeListener listener : listeners) {
+            listener.bookSaved(book, authorIds, publisherId);
+        }
+    }
+
+    private void resynchronize() throws Exception {
+        Set<Integer> bookIds = new HashSet<>();
+        List<BookHydrator.Row> rows = new ArrayList<>();
+        List<Integer[]> authorIds = new ArrayList<>();
+        PreparedStatement statement = connection.prepareStatement("select " + COLUMNS + " from book order by id");
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+            bookIds.add(resultSet.getInt("id"));
+            rows.add(rowOf(resultSet));
+            authorIds.add((Integer[]) resultSet.getArray("author_ids").getArray());
+            if (rows.size() == 1000) resaved(rows, authorIds);
+        }
+        resaved(rows, authorIds);
+        for (BookChangeListener listener : listeners) {
+            listener.booksRetained(bookIds);
+        }
+    }
+
+    private void resaved(List<BookHydrator.Row> rows, List<Integer[]> authorIds) throws Exception {
+        List<Book> books = hydrator.hydrate(rows);
+        for (int i = 0; i < books.size(); i++) {
+            for (BookChangeListener listener : listeners) {
+                listener.bookSaved(books.get(i), authorIds.get(i), books.get(i).getPublisherId());
+            }
+        }
+        rows.clear();
+        authorIds.clear();
+    }
+
+    private void publish(Invalidation.Type type, int bookId, BookStatus status) {
+        if (invalidationBus != null) invalidationBus.publish(type, bookId, status);
+    }
+
+    public boolean findRowById(int id, BookRowHandler handler) throws Exception {
+        String sql = "select " + COLUMNS + " from book where id=?";
         PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setInt(1, id);
+        ResultSet resultSet = statement.executeQuery();
+        if (!resultSet.next()) return false;
+        handleRow(resultSet, handler);
+        return true;
+    }
+
+    public void forEachRow(BookRowHandler handler) throws Exception {
+        String sql = "select " + COLUMNS + " from book order by id";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+            handleRow(resultSet, handler);
+        }
+    }
+
+    private void handleRow(ResultSet resultSet, BookRowHandler handler) throws Exception {
+        handler.handle(resultSet.getInt("id"), resultSet.getString("name"),
+                (Integer[]) resultSet.getArray("author_ids").getArray(),
+                resultSet.getInt("publisher_id"), BookStatus.valueOf(resultSet.getString("status").toUpperCase()),
+                resultSet.getInt("version"));
+    }
+
+    public Book findByName(String bookname) throws Exception {
+        String sql = "select " + COLUMNS + " from book where lower(name)=?";
+        PreparedStatement statement = readConnection.prepareStatement(sql);
         statement.setString(1, bookname.toLowerCase());
         ResultSet resultSet = statement.executeQuery();
         if (resultSet.next())
@@ -72,69 +318,71 @@ public class BookRepo {
         return null;
     }
 
-    public List<Book> findBooksByName(String name) throws SQLException {
-        Statement statement = connection.createStatement();
+    public Book findById(int id) throws Exception {
+        String sql = "select " + COLUMNS + " from book where id=?";
+        PreparedStatement statement = readConnection.prepareStatement(sql);
+        statement.setInt(1, id);
+        ResultSet resultSet = statement.executeQuery();
+        if (resultSet.next())
+            return buildBookFromResultSet(resultSet);
+        return null;
+    }
 
-        String sql = "select id,name,author_ids,publisher_id,status from book where lower(name) like'%" + name.toLowerCase() + "%'";
+    public List<Book> findBooksByName(String name) throws Exception {
+        return findBooksByName(name, null);
+    }
 
-        ResultSet resultSet = statement.executeQuery(sql);
-        List<Book> books = new ArrayList<>();
-        while (resultSet.next()) {
-            books.add(buildBookFromResultSet(resultSet));
-        }
-        return books;
+    public List<Book> findBooksByName(String name, BookStatus status) throws Exception {
+        return findBooks("lower(name) like ?", "%" + name.toLowerCase() + "%", status);
     }
 
-    private Book buildBookFromResultSet(ResultSet resultSet) throws SQLException {
-        int id = resultSet.getInt("id");
-        String name = resultSet.getString("name");
-        Array sqlArray = resultSet.getArray("author_ids");
-        Object obj = sqlArray.getArray();
-        Integer[] authorIds = (Integer[]) obj;
-        int publisherId = resultSet.getInt("publisher_id");
-        List<Author> authors = populateAuthors(authorIds);
-        Publisher publisher = populatePublisher(publisherId);
-        Book book = new Book(name, authors, publisher);
-        book.setId(id);
-        if (resultSet.getString("status").equalsIgnoreCase("ISSUED")) book.setBookStatus(BookStatus.ISSUED);
-        return book;
+    public List<Book> findBooksByAuthor(String authorName, BookStatus status) throws Exception {
+        int authorId = authorRepo.findIdByName(authorName);
+        if (authorId == -1) return new ArrayList<>();
+        return findBooks("? = any(author_ids)", authorId, status);
     }
 
-    private int populatePublisherId(Publisher publisher) throws SQLException {
-        int publisherId = publisherRepo.findIdByName(publisher.getName());
-        if (publisherId == -1)
-            publisherId = publisherRepo.save(publisher.getName());
-        return publisherId;
+    public List<Book> findBooksByPublisher(String publisherName, BookStatus status) throws Exception {
+        int publisherId = publisherRepo.findIdByName(publisherName);
+        if (publisherId == -1) return new ArrayList<>();
+        return findBooks("publisher_id=?", publisherId, status);
     }
 
-    private Integer[] populateAuthorIds(List<Author> authors) throws SQLException {
-        List<String> authorNames = authors.stream().map(a -> a.getName()).collect(Collectors.toList());
-        Integer[] authorIds = new Integer[authorNames.size()];
-        int i = 0;
-        for (String authorName : authorNames) {
-            int id = authorRepo.findIdByName(authorName);
-            if (id != -1)
-                authorIds[i] = id;
-            else
-                authorIds[i] = authorRepo.save(authorName);
-            i++;
+    public List<BookSummary> findSummariesByName(String name, BookStatus status) throws SQLException {
+        String sql = "select id,name,status from book where lower(name) like ?" + (status == null ? "" : " and status=?");
+        PreparedStatement statement = readConnection.prepareStatement(sql);
+        statement.setString(1, "%" + name.toLowerCase() + "%");
+        if (status != null) statement.setString(2, status.toString());
+        ResultSet resultSet = statement.executeQuery();
+        List<BookSummary> summaries = new ArrayList<>();
+        while (resultSet.next()) {
+            summaries.add(new BookSummary(resultSet.getInt("id"), resultSet.getString("name"),
+                    BookStatus.valueOf(resultSet.getString("status").toUpperCase())));
         }
-        return authorIds;
+        return summaries;
     }
 
-    private List<Author> populateAuthors(Integer[] authorIds) throws SQLException {
-        List<Author> authors = new ArrayList<>();
-        for (Integer authorId : authorIds) {
-            authors.add(authorRepo.findById(authorId));
-
+    private List<Book> findBooks(String condition, Object value, BookStatus status) throws Exception {
+        String sql = "select " + COLUMNS + " from book where " + condition + (status == null ? "" : " and status=?");
+        PreparedStatement statement = readConnection.prepareStatement(sql);
+        statement.setObject(1, value);
+        if (status != null) statement.setString(2, status.toString());
+        ResultSet resultSet = statement.executeQuery();
+        List<BookHydrator.Row> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            rows.add(rowOf(resultSet));
         }
-        return authors;
+        return hydrator.hydrate(rows);
     }
 
-    private Publisher populatePublisher(int publisherId) throws SQLException {
-        return publisherRepo.findById(publisherId);
+    private Book buildBookFromResultSet(ResultSet resultSet) throws Exception {
+        return hydrator.hydrate(Collections.singletonList(rowOf(resultSet))).get(0);
     }
 
-
+    private static BookHydrator.Row rowOf(ResultSet resultSet) throws SQLException {
+        return new BookHydrator.Row(resultSet.getInt("id"), resultSet.getString("name"),
+                (Integer[]) resultSet.getArray("author_ids").getArray(), resultSet.getInt("publisher_id"),
+                resultSet.getString("status").equalsIgnoreCase("ISSUED") ? BookStatus.ISSUED : BookStatus.AVAILABLE,
+                resultSet.getInt("version"));
+    }
 }
-
@@ -0,0 +1,7 @@
+package main.repository;
+
+import main.model.BookStatus;
+
+public interface BookRowHandler {
+    void handle(int id, String name, Integer[] authorIds, int publisherId, BookStatus status, int version) throws Exception;
+}
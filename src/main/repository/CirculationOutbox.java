@@ -0,0 +1,92 @@
+package main.repository;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CirculationOutbox {
+    private final String name;
+    private final Path file;
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+
+    public CirculationOutbox(Path file) throws IOException {
+        this(InetAddress.getLocalHost().getHostName() + ':' + file.toAbsolutePath().normalize(), file);
+    }
+
+    public CirculationOutbox(String name, Path file) throws IOException {
+        this.name = name;
+        this.file = file;
+        open();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized void append(OutboxEntry entry) throws IOException {
+        write(out, entry);
+        out.flush();
+    }
+
+    public synchronized void sync() throws IOException {
+        fileStream.getFD().sync();
+    }
+
+    public synchronized List<OutboxEntry> readAll() throws IOException {
+        List<OutboxEntry> entries = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                entries.add(read(in));
+            }
+        } catch (EOFException e) {
+            return entries;
+        }
+    }
+
+    public synchronized void rewrite(List<OutboxEntry> entries) throws IOException {
+        out.close();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream tempStream = new FileOutputStream(temp.toFile());
+             DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(tempStream))) {
+            for (OutboxEntry entry : entries) {
+                write(tempOut, entry);
+            }
+            tempOut.flush();
+            tempStream.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void open() throws IOException {
+        fileStream = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileStream));
+    }
+
+    private static void write(DataOutputStream out, OutboxEntry entry) throws IOException {
+        out.writeLong(entry.getSeq());
+        out.writeByte(entry.getType().ordinal());
+        out.writeInt(entry.getUserId());
+        out.writeUTF(entry.getUsername());
+        out.writeInt(entry.getBookId());
+        out.writeUTF(entry.getBookName());
+        out.writeLong(entry.getBorrowedDate());
+        out.writeLong(entry.getDueDate());
+        out.writeLong(entry.getReturnedDate());
+        out.writeUTF(entry.getStatus());
+    }
+
+    private static OutboxEntry read(DataInputStream in) throws IOException {
+        return new OutboxEntry(in.readLong(), OutboxEntry.Type.values()[in.readByte()], in.readInt(), in.readUTF(), in.readInt(),
+                in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readUTF());
+    }
+}
@@ -1,6 +1,7 @@
 package main.repository;
 
 import java.sql.Connection;
+import java.util.List;
 
 public class DataSourceBuilder {
     String dbDriver;
@@ -14,4 +15,10 @@ public class DataSourceBuilder {
         return new BaseDataSource(dbDriver, dbUrl, dbUser, dbPassword);
     }
 
+    public static BaseDataSource build(String dbDriver, String dbUrl, String dbUser, String dbPassword,
+                                       List<String> replicaUrls, ReplicatedDataSource.Balancing balancing, long pinMillis) {
+        if (replicaUrls.isEmpty()) return build(dbDriver, dbUrl, dbUser, dbPassword);
+        return new ReplicatedDataSource(dbDriver, dbUrl, dbUser, dbPassword, replicaUrls, balancing, pinMillis);
+    }
+
 }
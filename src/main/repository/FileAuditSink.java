@@ -0,0 +1,33 @@
+package main.repository;
+
+import main.model.AuditEvent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class FileAuditSink implements AuditSink {
+    private final BufferedWriter writer;
+
+    public FileAuditSink(Path file) throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void write(List<AuditEvent> events) throws IOException {
+        for (AuditEvent event : events) {
+            writer.write(event.toString());
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
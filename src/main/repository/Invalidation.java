@@ -0,0 +1,86 @@
+package main.repository;
+
+import main.model.BookStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Invalidation {
+    public enum Type {
+        BOOK,
+        BOOK_STATUS,
+        RESERVATION,
+        ALL
+    }
+
+    private static final String FIELD_SEPARATOR = ",";
+    static final String SEPARATOR = ";";
+
+    private final String origin;
+    private final Type type;
+    private final int bookId;
+    private final BookStatus status;
+    private final int version;
+
+    public Invalidation(String origin, Type type, int bookId, BookStatus status) {
+        this(origin, type, bookId, status, -1);
+    }
+
+    public Invalidation(String origin, Type type, int bookId, BookStatus status, int version) {
+        this.origin = origin;
+        this.type = type;
+        this.bookId = bookId;
+        this.status = status;
+        this.version = version;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public BookStatus getStatus() {
+        return status;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    String encode() {
+        return origin + FIELD_SEPARATOR + type + FIELD_SEPARATOR + bookId + FIELD_SEPARATOR + (status == null ? "" : status) + FIELD_SEPARATOR + version;
+    }
+
+    static Invalidation decode(String encoded) {
+        String[] fields = encoded.split(FIELD_SEPARATOR, -1);
+        BookStatus status = fields[3].isEmpty() ? null : BookStatus.valueOf(fields[3]);
+        int version = fields.length > 4 ? Integer.parseInt(fields[4]) : -1;
+        return new Invalidation(fields[0], Type.valueOf(fields[1]), Integer.parseInt(fields[2]), status, version);
+    }
+
+    static List<Invalidation> decodeAll(String payload) {
+        List<Invalidation> invalidations = new ArrayList<>();
+        for (String encoded : payload.split(SEPARATOR)) {
+            if (!encoded.isEmpty()) invalidations.add(decode(encoded));
+        }
+        return invalidations;
+    }
+
+    @Override
+    public String toString() {
+        return "Invalidation{" +
+                "origin='" + origin + '\'' +
+                ", type=" + type +
+                ", bookId=" + bookId +
+                (status == null ? "" : ", status=" + status) +
+                (version < 0 ? "" : ", version=" + version) +
+                '}';
+    }
+}
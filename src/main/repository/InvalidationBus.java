@@ -0,0 +1,124 @@
+package main.repository;
+
+import main.model.BookStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public abstract class InvalidationBus {
+    private final String nodeId;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Invalidation> pending = new LinkedHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    protected InvalidationBus(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void subscribe(InvalidationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(InvalidationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void publish(Invalidation.Type type, int bookId, BookStatus status) {
+        publish(type, bookId, status, -1);
+    }
+
+    public void publish(Invalidation.Type type, int bookId, BookStatus status, int version) {
+        synchronized (pending) {
+            queue(new Invalidation(nodeId, type, bookId, status, version));
+        }
+    }
+
+    private void queue(Invalidation invalidation) {
+        String key = (invalidation.getType() == Invalidation.Type.RESERVATION ? "reservation:" : "book:") + invalidation.getBookId();
+        Invalidation previous = pending.get(key);
+        if (previous != null && previous.getType() == Invalidation.Type.BOOK) return;
+        pending.put(key, invalidation);
+    }
+
+    public int pendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public void flush() throws Exception {
+        List<Invalidation> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        try {
+            send(batch);
+        } catch (Exception e) {
+            synchronized (pending) {
+                List<Invalidation> newer = new ArrayList<>(pending.values());
+                pending.clear();
+                for (Invalidation invalidation : batch) queue(invalidation);
+                for (Invalidation invalidation : newer) queue(invalidation);
+            }
+            throw e;
+        }
+    }
+
+    public void start(long windowMillis) throws Exception {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() throws Exception {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        flush();
+    }
+
+    protected abstract void send(List<Invalidation> batch) throws Exception;
+
+    protected void receive(List<Invalidation> batch) {
+        for (Invalidation invalidation : batch) {
+            if (invalidation.getOrigin().equals(nodeId)) continue;
+            deliver(invalidation);
+        }
+    }
+
+    protected void resynchronize() {
+        deliver(new Invalidation("", Invalidation.Type.ALL, 0, null));
+    }
+
+    private void deliver(Invalidation invalidation) {
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.invalidated(invalidation);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
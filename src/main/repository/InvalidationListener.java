@@ -0,0 +1,5 @@
+package main.repository;
+
+public interface InvalidationListener {
+    void invalidated(Invalidation invalidation) throws Exception;
+}
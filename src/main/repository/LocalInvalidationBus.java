@@ -0,0 +1,26 @@
+package main.repository;
+
+import java.util.List;
+
+public class LocalInvalidationBus extends InvalidationBus {
+    private final List<LocalInvalidationBus> network;
+
+    public LocalInvalidationBus(String nodeId, List<LocalInvalidationBus> network) {
+        super(nodeId);
+        this.network = network;
+        network.add(this);
+    }
+
+    @Override
+    protected void send(List<Invalidation> batch) {
+        for (LocalInvalidationBus node : network) {
+            node.receive(batch);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        super.close();
+        network.remove(this);
+    }
+}
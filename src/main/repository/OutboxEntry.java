@@ -0,0 +1,97 @@
+package main.repository;
+
+import main.model.Reading;
+
+import java.util.Date;
+
+public class OutboxEntry {
+    public enum Type {
+        BORROW,
+        RETURN
+    }
+
+    private final long seq;
+    private final Type type;
+    private final int userId;
+    private final String username;
+    private final int bookId;
+    private final String bookName;
+    private final long borrowedDate;
+    private final long dueDate;
+    private final long returnedDate;
+    private final String status;
+
+    public OutboxEntry(long seq, Type type, int userId, String username, int bookId, String bookName,
+                       long borrowedDate, long dueDate, long returnedDate, String status) {
+        this.seq = seq;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.bookId = bookId;
+        this.bookName = bookName;
+        this.borrowedDate = borrowedDate;
+        this.dueDate = dueDate;
+        this.returnedDate = returnedDate;
+        this.status = status;
+    }
+
+    public static OutboxEntry of(long seq, Type type, Reading reading) {
+        Date returned = reading.getReturnedDate();
+        return new OutboxEntry(seq, type, reading.getUser().getId(), reading.getUsername(), reading.getBook().getId(),
+                reading.getBookName(), reading.getBorrowedDate().getTime(), reading.getDueDate().getTime(),
+                returned == null ? 0 : returned.getTime(), reading.getStatus());
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public String getBookName() {
+        return bookName;
+    }
+
+    public long getBorrowedDate() {
+        return borrowedDate;
+    }
+
+    public long getDueDate() {
+        return dueDate;
+    }
+
+    public long getReturnedDate() {
+        return returnedDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public boolean isReturned() {
+        return returnedDate != 0;
+    }
+
+    public String loanKey() {
+        return username + '\u0000' + bookId;
+    }
+
+    OutboxEntry mergeReturn(OutboxEntry returned) {
+        return new OutboxEntry(seq, type, userId, username, bookId, bookName, borrowedDate, dueDate,
+                returned.returnedDate, returned.status);
+    }
+}
@@ -0,0 +1,148 @@
+package main.repository;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+public class PostgresInvalidationBus extends InvalidationBus {
+    static final String CHANNEL = "book_invalidation";
+    private static final int MAX_PAYLOAD = 7900;
+    private static final int POLL_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final BaseDataSource dataSource;
+    private Connection publishConnection;
+    private volatile Connection listenConnection;
+    private volatile boolean listening;
+    private Thread listener;
+
+    public PostgresInvalidationBus(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        super(UUID.randomUUID().toString().substring(0, 8));
+        this.dataSource = dataSource;
+        publishConnection = open();
+        listenConnection = open();
+    }
+
+    private Connection open() throws SQLException, ClassNotFoundException {
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(true);
+        return connection;
+    }
+
+    @Override
+    public void start(long windowMillis) throws Exception {
+        listen(listenConnection);
+        listening = true;
+        listener = new Thread(this::poll, "invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+        super.start(windowMillis);
+    }
+
+    private void poll() {
+        long backoff = POLL_MILLIS;
+        while (listening) {
+            try {
+                PGNotification[] received = listenConnection.unwrap(PGConnection.class).getNotifications(POLL_MILLIS);
+                backoff = POLL_MILLIS;
+                if (received == null) continue;
+                for (PGNotification notification : received) {
+                    receive(Invalidation.decodeAll(notification.getParameter()));
+                }
+            } catch (SQLException e) {
+                if (!listening) return;
+                e.printStackTrace();
+                do {
+                    sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                } while (listening && !reconnect());
+            }
+        }
+    }
+
+    private boolean reconnect() {
+        closeQuietly(listenConnection);
+        Connection connection = null;
+        try {
+            connection = open();
+            listen(connection);
+        } catch (Exception e) {
+            closeQuietly(connection);
+            return false;
+        }
+        listenConnection = connection;
+        resynchronize();
+        return true;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static void listen(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("listen " + CHANNEL);
+        statement.close();
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listening = false;
+        }
+    }
+
+    @Override
+    protected void send(List<Invalidation> batch) throws Exception {
+        if (publishConnection.isClosed()) publishConnection = open();
+        try {
+            sendBatch(batch);
+        } catch (SQLException e) {
+            closeQuietly(publishConnection);
+            throw e;
+        }
+    }
+
+    private void sendBatch(List<Invalidation> batch) throws SQLException {
+        PreparedStatement statement = publishConnection.prepareStatement("select pg_notify(?,?)");
+        statement.setString(1, CHANNEL);
+        StringBuilder payload = new StringBuilder();
+        for (Invalidation invalidation : batch) {
+            String encoded = invalidation.encode();
+            if (payload.length() > 0 && payload.length() + encoded.length() + 1 > MAX_PAYLOAD) {
+                sendPayload(statement, payload);
+            }
+            if (payload.length() > 0) payload.append(Invalidation.SEPARATOR);
+            payload.append(encoded);
+        }
+        if (payload.length() > 0) sendPayload(statement, payload);
+        statement.close();
+    }
+
+    private static void sendPayload(PreparedStatement statement, StringBuilder payload) throws SQLException {
+        statement.setString(2, payload.toString());
+        statement.execute();
+        payload.setLength(0);
+    }
+
+    @Override
+    public void close() throws Exception {
+        super.close();
+        listening = false;
+        if (listener != null) listener.join(POLL_MILLIS * 2);
+        listenConnection.close();
+        publishConnection.close();
+    }
+}
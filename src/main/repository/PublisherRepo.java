@@ -1,26 +1,70 @@
 package main.repository;
 
 import main.model.Publisher;
+import main.util.Interner;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class PublisherRepo {
     private final Connection connection;
 
+    private final Interner<Publisher> publishers;
+
     public PublisherRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        this(dataSource, new Interner<Publisher>());
+    }
+
+    public PublisherRepo(BaseDataSource dataSource, Interner<Publisher> publishers) throws SQLException, ClassNotFoundException {
         connection = dataSource.getConnection();
+        this.publishers = publishers;
     }
 
-    public int save(String publisherName) throws SQLException {
+    public Publisher canonical(int id, String name) {
+        Publisher publisher = publishers.get(id);
+        if (publisher != null && publisher.getName().equals(name)) return publisher;
+        return publishers.intern(id, new Publisher(name));
+    }
+
+    public void installNameConstraint() throws SQLException {
         Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select to_regclass('publisher_name_key') is not null");
+        if (resultSet.next() && resultSet.getBoolean(1)) return;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            statement.execute("lock table publisher in share row exclusive mode");
+            statement.execute("create temp table duplicate_publisher on commit drop as select id, keep from " +
+                    "(select id, min(id) over (partition by name) as keep from publisher) ranked where id <> keep");
+            statement.executeUpdate("update book set version = version + 1, publisher_id = d.keep from duplicate_publisher d where book.publisher_id = d.id");
+            statement.executeUpdate("delete from publisher where id in (select id from duplicate_publisher)");
+            statement.execute("create unique index if not exists publisher_name_key on publisher(name)");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public Interner<Publisher> getPublisherRegistry() {
+        return publishers;
+    }
+
+    public int save(String publisherName) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("insert into publisher(name) values(?) returning id");
+        statement.setString(1, publisherName);
         int id = -1;
-        String sql = "insert into publisher(name) values('" + publisherName + "')";
-        statement.executeUpdate(sql);
-        sql = "select last_value from publisher_id_seq;";
-        ResultSet resultSet = statement.executeQuery(sql);
+        ResultSet resultSet = statement.executeQuery();
         if (resultSet.next()) {
             id = resultSet.getInt(1);
         }
@@ -29,9 +73,9 @@ public class PublisherRepo {
 
     public int findIdByName(String publisherName) throws SQLException {
         int id = -1;
-        Statement statement = connection.createStatement();
-        String sql = "select id from publisher where name='" + publisherName + "'";
-        ResultSet resultSet = statement.executeQuery(sql);
+        PreparedStatement statement = connection.prepareStatement("select id from publisher where lower(name)=lower(?) order by id limit 1");
+        statement.setString(1, publisherName);
+        ResultSet resultSet = statement.executeQuery();
         if (resultSet.next()) {
             id = resultSet.getInt(1);
         }
@@ -39,15 +83,46 @@ public class PublisherRepo {
     }
 
     public Publisher findById(int publisherId) throws SQLException {
+        Publisher cached = publishers.get(publisherId);
+        if (cached != null) return cached;
         Statement statement = connection.createStatement();
         String sql = "select name from publisher where id=" + publisherId;
         ResultSet resultSet = statement.executeQuery(sql);
 
         if (resultSet.next()) {
-            return new Publisher(resultSet.getString("name"));
+            return canonical(publisherId, resultSet.getString("name"));
         }
         return null;
     }
 
+    public Map<Integer, Publisher> findByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Publisher> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Publisher cached = publishers.get(id);
+            if (cached != null) found.put(id, cached);
+            else missing.add(id);
+        }
+        if (missing.isEmpty()) return found;
+        PreparedStatement statement = connection.prepareStatement("select id,name from publisher where id = any(?)");
+        statement.setArray(1, connection.createArrayOf("int", missing.toArray()));
+        ResultSet resultSet = statement.executeQuery();
+        while (resultSet.next()) {
+            int id = resultSet.getInt("id");
+            found.put(id, canonical(id, resultSet.getString("name")));
+        }
+        return found;
+    }
 
+    public Map<Integer, Publisher> findAll() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(1000);
+        ResultSet resultSet = statement.executeQuery("select id,name from publisher");
+        Map<Integer, Publisher> all = new HashMap<>();
+        while (resultSet.next()) {
+            int id = resultSet.getInt("id");
+            all.put(id, canonical(id, resultSet.getString("name")));
+        }
+        return all;
+    }
 }
@@ -0,0 +1,49 @@
+package main.repository;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReadingArchiveRepo {
+    private static final String COLUMNS = "id,user_id,book_id,username,bookname,borrowed_date,due_date,returned_date,status";
+
+    private final Connection connection;
+
+    public ReadingArchiveRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists reading_archive (like reading including defaults) partition by range (returned_date)");
+        statement.executeUpdate("alter table reading_archive add column if not exists user_id int, add column if not exists book_id int");
+        statement.executeUpdate("create table if not exists reading_archive_default partition of reading_archive default");
+        statement.executeUpdate("create index if not exists reading_archive_user_idx on reading_archive (user_id)");
+    }
+
+    public int archiveReturnedBefore(Date cutoff, int batchSize) throws SQLException {
+        ensurePartitions(cutoff);
+        String sql = "with moved as (delete from reading where id in " +
+                "(select id from reading where returned_date < ? order by id limit ? for update skip locked) returning " + COLUMNS + ") " +
+                "insert into reading_archive(" + COLUMNS + ") select " + COLUMNS + " from moved";
+        PreparedStatement statement = connection.prepareStatement(sql);
+        statement.setDate(1, cutoff);
+        statement.setInt(2, batchSize);
+        return statement.executeUpdate();
+    }
+
+    private void ensurePartitions(Date cutoff) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select distinct extract(year from returned_date)::int from reading where returned_date < ?");
+        statement.setDate(1, cutoff);
+        ResultSet resultSet = statement.executeQuery();
+        List<Integer> years = new ArrayList<>();
+        while (resultSet.next()) {
+            years.add(resultSet.getInt(1));
+        }
+        Statement ddl = connection.createStatement();
+        for (int year : years) {
+            ddl.executeUpdate("create table if not exists reading_archive_" + year + " partition of reading_archive " +
+                    "for values from ('" + year + "-01-01') to ('" + (year + 1) + "-01-01')");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package main.repository;
+
+import java.sql.*;
+
+public class ReadingKeyMigration {
+    private static final String[] TABLES = {"reading", "reading_archive"};
+
+    private final Connection connection;
+
+    public ReadingKeyMigration(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        for (String table : TABLES) {
+            if (exists(table) && !hasKeyColumns(table)) addColumns(table);
+        }
+        addIndexes();
+    }
+
+    public long run(int batchSize) throws SQLException {
+        install();
+        long migrated = 0;
+        for (String table : TABLES) {
+            if (exists(table)) migrated += backfill(table, batchSize);
+        }
+        return migrated;
+    }
+
+    private boolean exists(String table) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select to_regclass(?) is not null");
+        statement.setString(1, table);
+        ResultSet resultSet = statement.executeQuery();
+        return resultSet.next() && resultSet.getBoolean(1);
+    }
+
+    private boolean hasKeyColumns(String table) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("select count(*) from information_schema.columns " +
+                "where table_schema=current_schema() and table_name=? and column_name in ('user_id','book_id')");
+        statement.setString(1, table);
+        ResultSet resultSet = statement.executeQuery();
+        return resultSet.next() && resultSet.getInt(1) == 2;
+    }
+
+    private void addColumns(String table) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("alter table " + table + " add column if not exists user_id int, add column if not exists book_id int");
+    }
+
+    private long backfill(String table, int batchSize) throws SQLException {
+        PreparedStatement nextBatch = connection.prepareStatement(
+                "select max(id) from (select id from " + table + " where id>? and (user_id is null or book_id is null) order by id limit ?) batch");
+        PreparedStatement update = connection.prepareStatement(
+                "update " + table + " r set user_id=coalesce(r.user_id,(select u.id from \"user\" u where u.username=r.username))," +
+                        "book_id=coalesce(r.book_id,(select min(b.id) from book b where lower(b.name)=lower(r.bookname))) " +
+                        "where r.id>? and r.id<=? and (r.user_id is null or r.book_id is null)");
+        long migrated = 0;
+        int lastId = 0;
+        while (true) {
+            nextBatch.setInt(1, lastId);
+            nextBatch.setInt(2, batchSize);
+            ResultSet resultSet = nextBatch.executeQuery();
+            resultSet.next();
+            int batchEnd = resultSet.getInt(1);
+            if (resultSet.wasNull()) return migrated;
+            update.setInt(1, lastId);
+            update.setInt(2, batchEnd);
+            migrated += update.executeUpdate();
+            lastId = batchEnd;
+        }
+    }
+
+    private void addIndexes() throws SQLException {
+        Statement statement = connection.createStatement();
+        if (!exists("reading_user_book_active_idx"))
+            statement.executeUpdate("create index if not exists reading_user_book_active_idx on reading (user_id, book_id) where returned_date is null");
+        if (!exists("reading_book_idx"))
+            statement.executeUpdate("create index if not exists reading_book_idx on reading (book_id)");
+        if (exists("reading_archive") && !exists("reading_archive_user_idx"))
+            statement.executeUpdate("create index if not exists reading_archive_user_idx on reading_archive (user_id)");
+    }
+}
@@ -1,70 +1,448 @@
 package main.repository;
 
 import main.model.Book;
+import main.model.BookStatus;
 import main.model.Reading;
+import main.model.Reservation;
 import main.model.User;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ReadingRepo {
 
 
     private final Connection connection;
+    private final Connection readConnection;
     private final BookRepo bookRepo;
 
 
+    private static final String INSERT_SQL = "insert into reading(user_id,book_id,username,bookname,borrowed_date,due_date,status) " +
+            "values(coalesce(nullif(?,0),(select id from \"user\" where username=?)),?,?,?,?,?,?)";
+    private static final String OUTBOX_INSERT_SQL = "insert into reading(user_id,book_id,username,bookname,borrowed_date,due_date,returned_date,status) " +
+            "values(coalesce(nullif(?,0),(select id from \"user\" where username=?)),?,?,?,?,?,?,?)";
+    private static final String OUTBOX_RETURN_SQL = "update reading set returned_date=?,status=? " +
+            "where user_id=coalesce(nullif(?,0),(select id from \"user\" where username=?)) and book_id=? and returned_date is null";
+    private static final String COLUMNS = "id,user_id,book_id,borrowed_date,due_date,returned_date";
+
     public ReadingRepo(BaseDataSource baseDataSource, BookRepo bookRepo) throws SQLException, ClassNotFoundException {
         this.connection = baseDataSource.getConnection();
+        this.readConnection = baseDataSource.getReadConnection(connection);
         this.bookRepo = bookRepo;
     }
 
     public boolean save(Reading reading) throws Exception {
-        boolean resultCode = true;
-        String sql = "insert into reading(username,bookname,borrowed_date,due_date,status) values(?,?,?,?,?)";
-        PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-        preparedStatement.setString(1, reading.getUsername());
-        preparedStatement.setString(2, reading.getBookName());
-        preparedStatement.setDate(3, new Date(reading.getBorrowedDate().getTime()));
-        preparedStatement.setDate(4, new Date(reading.getDueDate().getTime()));
-        preparedStatement.setString(5, reading.getStatus());
-        int insertedId = preparedStatement.executeUpdate();
-        reading.setId(insertedId);
-        resultCode &= insertedId > 0;
-        resultCode &= bookRepo.update(reading.getBook());
-        return resultCode;
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            boolean resultCode = true;
+            PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
+            bindInsert(preparedStatement, reading);
+            resultCode &= preparedStatement.executeUpdate() > 0;
+            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+            if (generatedKeys.next()) reading.setId(generatedKeys.getInt(1));
+            int version = changeBookStatus(reading.getBook());
+            resultCode &= version != -1;
+            if (resultCode) {
+                if (ownsTransaction) connection.commit();
+                statusCommitted(reading.getBook(), version);
+            } else if (ownsTransaction) connection.rollback();
+            return resultCode;
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
     }
 
     public boolean update(Reading reading) throws SQLException {
-        boolean resultCode = true;
-        String sql = "update reading set returned_date=?,due_date=?,status=? where id=?";
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            boolean resultCode = true;
+            String sql = "update reading set returned_date=?,due_date=?,status=? where id=?";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setDate(1, new Date(reading.getReturnedDate().getTime()));
+            preparedStatement.setDate(2, new Date(reading.getDueDate().getTime()));
+            preparedStatement.setString(3, reading.getStatus());
+            preparedStatement.setInt(4, reading.getId());
+            resultCode &= preparedStatement.executeUpdate() > 0;
+            int version = resultCode ? changeBookStatus(reading.getBook()) : -1;
+            resultCode &= version != -1;
+            if (resultCode) {
+                if (ownsTransaction) connection.commit();
+                statusCommitted(reading.getBook(), version);
+            } else if (ownsTransaction) connection.rollback();
+            return resultCode;
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
+    }
+
+    public boolean refresh(Book book) throws Exception {
+        PreparedStatement preparedStatement = connection.prepareStatement("select status,version from book where id=?");
+        preparedStatement.setInt(1, book.getId());
+        ResultSet resultSet = preparedStatement.executeQuery();
+        if (!resultSet.next()) return false;
+        book.setBookStatus(BookStatus.valueOf(resultSet.getString("status").toUpperCase()));
+        book.setVersion(resultSet.getInt("version"));
+        book.clearDirty();
+        return true;
+    }
+
+    private int changeBookStatus(Book book) throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "update book set status=?, version=version+1 where id=? and version=? returning version");
+        preparedStatement.setString(1, book.getBookStatus().toString());
+        preparedStatement.setInt(2, book.getId());
+        preparedStatement.setInt(3, book.getVersion());
+        ResultSet resultSet = preparedStatement.executeQuery();
+        if (resultSet.next()) return resultSet.getInt(1);
+        preparedStatement = connection.prepareStatement("select version from book where id=?");
+        preparedStatement.setInt(1, book.getId());
+        resultSet = preparedStatement.executeQuery();
+        if (resultSet.next()) throw new StaleBookException(book.getId(), book.getVersion(), resultSet.getInt(1));
+        return -1;
+    }
+
+    private void statusCommitted(Book book, int version) {
+        book.setVersion(version);
+        book.clearDirty();
+        bookRepo.statusChanged(book.getId(), book.getBookStatus(), version);
+    }
+
+    public boolean[] saveAll(List<Reading> readings) throws SQLException {
+        boolean[] claimed = new boolean[readings.size()];
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            int[] claimCounts = changeBookStatus(readings, BookStatus.AVAILABLE, BookStatus.ISSUED);
+
+            PreparedStatement preparedStatement = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
+            for (int i = 0; i < readings.size(); i++) {
+                if (claimCounts[i] <= 0) continue;
+                bindInsert(preparedStatement, readings.get(i));
+                preparedStatement.addBatch();
+                claimed[i] = true;
+            }
+            preparedStatement.executeBatch();
+            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+            for (int i = 0; i < readings.size(); i++) {
+                if (claimed[i] && generatedKeys.next()) readings.get(i).setId(generatedKeys.getInt(1));
+            }
+            Map<Integer, Integer> versions = findVersions(readings, claimed);
+            if (ownsTransaction) connection.commit();
+            notifyStatusChanged(versions, BookStatus.ISSUED);
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
+        return claimed;
+    }
+
+    public boolean[] updateAll(List<Reading> readings) throws SQLException {
+        boolean[] released = new boolean[readings.size()];
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            int[] releaseCounts = changeBookStatus(readings, BookStatus.ISSUED, BookStatus.AVAILABLE);
+
+            String sql = "update reading set returned_date=?,due_date=?,status=? where id=?";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            for (int i = 0; i < readings.size(); i++) {
+                if (releaseCounts[i] <= 0) continue;
+                Reading reading = readings.get(i);
+                preparedStatement.setDate(1, new Date(reading.getReturnedDate().getTime()));
+                preparedStatement.setDate(2, new Date(reading.getDueDate().getTime()));
+                preparedStatement.setString(3, reading.getStatus());
+                preparedStatement.setInt(4, reading.getId());
+                preparedStatement.addBatch();
+                released[i] = true;
+            }
+            preparedStatement.executeBatch();
+            Map<Integer, Integer> versions = findVersions(readings, released);
+            if (ownsTransaction) connection.commit();
+            notifyStatusChanged(versions, BookStatus.AVAILABLE);
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
+        return released;
+    }
+
+    public boolean handOver(Reading returned, Reading next, Reservation reservation) throws SQLException {
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            String sql = "update reservation set status=? where id=? and status=?";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, ReservationRepo.FULFILLED);
+            preparedStatement.setInt(2, reservation.getId());
+            preparedStatement.setString(3, ReservationRepo.WAITING);
+            if (preparedStatement.executeUpdate() == 0) {
+                if (ownsTransaction) connection.rollback();
+                return false;
+            }
+
+            sql = "update reading set returned_date=?,due_date=?,status=? where id=?";
+            preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setDate(1, new Date(returned.getReturnedDate().getTime()));
+            preparedStatement.setDate(2, new Date(returned.getDueDate().getTime()));
+            preparedStatement.setString(3, returned.getStatus());
+            preparedStatement.setInt(4, returned.getId());
+            if (preparedStatement.executeUpdate() == 0) throw new SQLException("Reading " + returned.getId() + " no longer exists");
+
+            preparedStatement = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
+            bindInsert(preparedStatement, next);
+            preparedStatement.executeUpdate();
+            ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+            if (generatedKeys.next()) next.setId(generatedKeys.getInt(1));
+            if (ownsTransaction) connection.commit();
+            return true;
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
+    }
+
+    public void installOutbox(String outbox) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists circulation_outbox (name varchar primary key, applied_seq bigint not null)");
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into circulation_outbox values(?,0) on conflict do nothing");
+        preparedStatement.setString(1, outbox);
+        preparedStatement.executeUpdate();
+    }
+
+    public long appliedOutboxSeq(String outbox) throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement("select applied_seq from circulation_outbox where name=?");
+        preparedStatement.setString(1, outbox);
+        ResultSet resultSet = preparedStatement.executeQuery();
+        return resultSet.next() ? resultSet.getLong(1) : 0;
+    }
+
+    public List<OutboxEntry> applyOutbox(String outbox, List<OutboxEntry> entries) throws SQLException {
+        List<OutboxEntry> rejected = new ArrayList<>();
+        if (entries.isEmpty()) return rejected;
+        Map<String, OutboxEntry> borrows = new LinkedHashMap<>();
+        List<OutboxEntry> returns = new ArrayList<>();
+        Map<Integer, BookStatus[]> transitions = new LinkedHashMap<>();
+        for (OutboxEntry entry : entries) {
+            boolean borrow = entry.getType() == OutboxEntry.Type.BORROW;
+            BookStatus[] transition = transitions.computeIfAbsent(entry.getBookId(),
+                    id -> new BookStatus[]{borrow ? BookStatus.AVAILABLE : BookStatus.ISSUED, null});
+            transition[1] = borrow ? BookStatus.ISSUED : BookStatus.AVAILABLE;
+            if (borrow) {
+                borrows.put(entry.loanKey(), entry);
+                continue;
+            }
+            OutboxEntry borrowed = borrows.get(entry.loanKey());
+            if (borrowed != null && !borrowed.isReturned()) borrows.put(entry.loanKey(), borrowed.mergeReturn(entry));
+            else returns.add(entry);
+        }
+
+        boolean ownsTransaction = connection.getAutoCommit();
+        if (ownsTransaction) connection.setAutoCommit(false);
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement("update circulation_outbox set applied_seq=? where name=? and applied_seq<?");
+            long lastSeq = entries.get(entries.size() - 1).getSeq();
+            preparedStatement.setLong(1, lastSeq);
+            preparedStatement.setString(2, outbox);
+            preparedStatement.setLong(3, lastSeq);
+            if (preparedStatement.executeUpdate() == 0)
+                throw new SQLException("Outbox " + outbox + " is already past seq " + lastSeq);
+
+            preparedStatement = connection.prepareStatement("update book set status=?, version=version+1 where id=? and status=?");
+            for (Map.Entry<Integer, BookStatus[]> transition : transitions.entrySet()) {
+                preparedStatement.setString(1, transition.getValue()[1].toString());
+                preparedStatement.setInt(2, transition.getKey());
+                preparedStatement.setString(3, transition.getValue()[0].toString());
+                preparedStatement.addBatch();
+            }
+            int[] counts = preparedStatement.executeBatch();
+            Set<Integer> conflicts = new HashSet<>();
+            int index = 0;
+            for (Integer bookId : transitions.keySet()) {
+                if (counts[index++] <= 0) conflicts.add(bookId);
+            }
+
+            preparedStatement = connection.prepareStatement(OUTBOX_RETURN_SQL);
+            for (OutboxEntry entry : returns) {
+                preparedStatement.setDate(1, new Date(entry.getReturnedDate()));
+                preparedStatement.setString(2, entry.getStatus());
+                preparedStatement.setInt(3, entry.getUserId());
+                preparedStatement.setString(4, entry.getUsername());
+                preparedStatement.setInt(5, entry.getBookId());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            preparedStatement = connection.prepareStatement(OUTBOX_INSERT_SQL);
+            for (OutboxEntry entry : borrows.values()) {
+                if (conflicts.contains(entry.getBookId())) {
+                    rejected.add(entry);
+                    continue;
+                }
+                preparedStatement.setInt(1, entry.getUserId());
+                preparedStatement.setString(2, entry.getUsername());
+                preparedStatement.setInt(3, entry.getBookId());
+                preparedStatement.setString(4, entry.getUsername());
+                preparedStatement.setString(5, entry.getBookName());
+                preparedStatement.setDate(6, new Date(entry.getBorrowedDate()));
+                preparedStatement.setDate(7, new Date(entry.getDueDate()));
+                preparedStatement.setDate(8, entry.isReturned() ? new Date(entry.getReturnedDate()) : null);
+                preparedStatement.setString(9, entry.getStatus());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            Map<Integer, Integer> versions = findVersions(transitions.keySet(), conflicts);
+            if (ownsTransaction) connection.commit();
+            for (Map.Entry<Integer, Integer> version : versions.entrySet()) {
+                bookRepo.statusChanged(version.getKey(), transitions.get(version.getKey())[1], version.getValue());
+            }
+            return rejected;
+        } catch (SQLException e) {
+            if (ownsTransaction) connection.rollback();
+            throw e;
+        } finally {
+            if (ownsTransaction) connection.setAutoCommit(true);
+        }
+    }
+
+    public void announceStatus(int bookId, BookStatus status) {
+        bookRepo.statusChanged(bookId, status, -1);
+    }
+
+    private static void bindInsert(PreparedStatement preparedStatement, Reading reading) throws SQLException {
+        preparedStatement.setInt(1, reading.getUser().getId());
+        preparedStatement.setString(2, reading.getUsername());
+        preparedStatement.setInt(3, reading.getBook().getId());
+        preparedStatement.setString(4, reading.getUsername());
+        preparedStatement.setString(5, reading.getBookName());
+        preparedStatement.setDate(6, new Date(reading.getBorrowedDate().getTime()));
+        preparedStatement.setDate(7, new Date(reading.getDueDate().getTime()));
+        preparedStatement.setString(8, reading.getStatus());
+    }
+
+    private void notifyStatusChanged(Map<Integer, Integer> versions, BookStatus status) {
+        for (Map.Entry<Integer, Integer> version : versions.entrySet()) {
+            bookRepo.statusChanged(version.getKey(), status, version.getValue());
+        }
+    }
+
+    private Map<Integer, Integer> findVersions(List<Reading> readings, boolean[] changed) throws SQLException {
+        Set<Integer> bookIds = new LinkedHashSet<>();
+        for (int i = 0; i < readings.size(); i++) {
+            if (changed[i]) bookIds.add(readings.get(i).getBook().getId());
+        }
+        return findVersions(bookIds, new HashSet<>());
+    }
+
+    private Map<Integer, Integer> findVersions(Set<Integer> bookIds, Set<Integer> excluded) throws SQLException {
+        Set<Integer> wanted = new LinkedHashSet<>(bookIds);
+        wanted.removeAll(excluded);
+        Map<Integer, Integer> versions = new LinkedHashMap<>();
+        if (wanted.isEmpty()) return versions;
+        PreparedStatement preparedStatement = connection.prepareStatement("select id,version from book where id = any(?)");
+        preparedStatement.setArray(1, connection.createArrayOf("int", wanted.toArray()));
+        ResultSet resultSet = preparedStatement.executeQuery();
+        while (resultSet.next()) {
+            versions.put(resultSet.getInt("id"), resultSet.getInt("version"));
+        }
+        return versions;
+    }
+
+    private int[] changeBookStatus(List<Reading> readings, BookStatus from, BookStatus to) throws SQLException {
+        String sql = "update book set status=?, version=version+1 where id=? and status=?";
         PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setDate(1, new Date(reading.getReturnedDate().getTime()));
-        preparedStatement.setDate(2, new Date(reading.getDueDate().getTime()));
-        preparedStatement.setString(3, reading.getStatus());
-        preparedStatement.setInt(4, reading.getId());
-        resultCode &= preparedStatement.executeUpdate() > 0;
-        resultCode &= bookRepo.update(reading.getBook());
-        return resultCode;
+        for (Reading reading : readings) {
+            preparedStatement.setString(1, to.toString());
+            preparedStatement.setInt(2, reading.getBook().getId());
+            preparedStatement.setString(3, from.toString());
+            preparedStatement.addBatch();
+        }
+        return preparedStatement.executeBatch();
     }
 
-    public Reading findByUserAndBook(User user, Book book) throws SQLException {
-        String sql = "select id,username,bookname,borrowed_date,due_date,returned_date,status from reading where username =? and bookname=?";
+    public Map<Integer, Reading> findByUserAndBooks(User user, List<Book> books) throws SQLException {
+        Map<Integer, Book> booksById = new HashMap<>();
+        for (Book book : books) {
+            booksById.put(book.getId(), book);
+        }
+        String sql = "select " + COLUMNS + " from reading where user_id=? and book_id = any(?) and returned_date is null order by id";
         PreparedStatement preparedStatement = connection.prepareStatement(sql);
-        preparedStatement.setString(1, user.getUsername());
-        preparedStatement.setString(2, book.getName());
+        preparedStatement.setInt(1, user.getId());
+        preparedStatement.setArray(2, connection.createArrayOf("int", booksById.keySet().toArray()));
         ResultSet resultSet = preparedStatement.executeQuery();
 
-        return buildReadingFromResultSet(resultSet, user);
+        Map<Integer, Reading> readings = new HashMap<>();
+        while (resultSet.next()) {
+            Book book = booksById.get(resultSet.getInt("book_id"));
+            readings.put(book.getId(), buildReading(resultSet, user, book));
+        }
+        return readings;
+    }
+
+    public Map<Integer, Long> countBorrowsByBook() throws SQLException {
+        Statement statement = readConnection.createStatement();
+        ResultSet resultSet = statement.executeQuery("select book_id,count(*) from reading group by book_id");
+        Map<Integer, Long> borrows = new HashMap<>();
+        while (resultSet.next()) {
+            borrows.put(resultSet.getInt(1), resultSet.getLong(2));
+        }
+        return borrows;
+    }
+
+    public Reading findByUserAndBook(User user, Book book) throws Exception {
+        String sql = "select " + COLUMNS + " from reading where user_id=? and book_id=? and returned_date is null";
+        PreparedStatement preparedStatement = readConnection.prepareStatement(sql);
+        preparedStatement.setInt(1, user.getId());
+        preparedStatement.setInt(2, book.getId());
+        ResultSet resultSet = preparedStatement.executeQuery();
+        if (resultSet.next()) return buildReading(resultSet, user, book);
+        return null;
     }
 
-    private Reading buildReadingFromResultSet(ResultSet resultSet, User user) throws SQLException {
-        Reading reading = null;
+    public List<Reading> findHistoryByUser(User user) throws Exception {
+        String sql = "select " + COLUMNS + " from reading where user_id=? union all " +
+                "select " + COLUMNS + " from reading_archive where user_id=? order by borrowed_date desc,id desc";
+        PreparedStatement preparedStatement = readConnection.prepareStatement(sql);
+        preparedStatement.setInt(1, user.getId());
+        preparedStatement.setInt(2, user.getId());
+        ResultSet resultSet = preparedStatement.executeQuery();
 
-        if (resultSet.next()) {
-            Book book = bookRepo.findByName(resultSet.getString("bookname"));
-            reading = new Reading(user, book, new java.util.Date(resultSet.getDate("borrowed_date").getTime()));
-            reading.setId(resultSet.getInt("id"));
+        Map<Integer, Book> booksById = new HashMap<>();
+        List<Reading> readings = new ArrayList<>();
+        while (resultSet.next()) {
+            int bookId = resultSet.getInt("book_id");
+            Book book = booksById.containsKey(bookId) ? booksById.get(bookId) : bookRepo.findById(bookId);
+            booksById.put(bookId, book);
+            readings.add(buildReading(resultSet, user, book));
         }
+        return readings;
+    }
+
+    private Reading buildReading(ResultSet resultSet, User user, Book book) throws SQLException {
+        Reading reading = new Reading(user, book, new java.util.Date(resultSet.getDate("borrowed_date").getTime()));
+        reading.setId(resultSet.getInt("id"));
+        if (resultSet.getDate("returned_date") != null)
+            reading.setReturnedDate(new java.util.Date(resultSet.getDate("returned_date").getTime()));
         return reading;
     }
 }
@@ -0,0 +1,145 @@
+package main.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+public class ReplicatedDataSource extends BaseDataSource {
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    private static final Set<String> STATEMENT_FACTORIES = new HashSet<>(Arrays.asList("createStatement", "prepareStatement", "prepareCall"));
+    private static final Set<String> WRITES = new HashSet<>(Arrays.asList("execute", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch"));
+    private static final Pattern MODIFYING = Pattern.compile("\\b(insert\\s+into|update\\s+\\S+\\s+set|delete\\s+from|for\\s+update)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final List<BaseDataSource> replicas = new ArrayList<>();
+    private final Balancing balancing;
+    private final long pinMillis;
+    private final AtomicInteger[] inFlight;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Long> pinnedUntil = new ThreadLocal<>();
+
+    public ReplicatedDataSource(String dbDriver, String dbUrl, String dbUser, String dbPassword,
+                                List<String> replicaUrls, Balancing balancing, long pinMillis) {
+        super(dbDriver, dbUrl, dbUser, dbPassword);
+        for (String replicaUrl : replicaUrls) {
+            replicas.add(new BaseDataSource(dbDriver, replicaUrl, dbUser, dbPassword));
+        }
+        this.balancing = balancing;
+        this.pinMillis = pinMillis;
+        inFlight = new AtomicInteger[replicas.size()];
+        for (int i = 0; i < inFlight.length; i++) inFlight[i] = new AtomicInteger();
+    }
+
+    @Override
+    public Connection getConnection() throws ClassNotFoundException, SQLException {
+        Connection primary = super.getConnection();
+        return proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(primary, method, args);
+            if (STATEMENT_FACTORIES.contains(method.getName()))
+                return pinOnWrite((Statement) result, method.getReturnType(), args != null && args.length > 0 ? (String) args[0] : null);
+            return result;
+        });
+    }
+
+    @Override
+    public Connection getReadConnection(Connection writeConnection) throws ClassNotFoundException, SQLException {
+        if (replicas.isEmpty()) return writeConnection;
+        Connection[] replicaConnections = new Connection[replicas.size()];
+        for (int i = 0; i < replicaConnections.length; i++) {
+            replicaConnections[i] = replicas.get(i).getConnection();
+        }
+        return proxy(Connection.class, (proxy, method, args) -> {
+            if (method.getName().equals("close")) {
+                for (Connection replicaConnection : replicaConnections) replicaConnection.close();
+                return null;
+            }
+            if (!STATEMENT_FACTORIES.contains(method.getName()) || isPinned()) return invoke(writeConnection, method, args);
+            int replica = chooseReplica();
+            Statement statement = (Statement) invoke(replicaConnections[replica], method, args);
+            return countInFlight(statement, method.getReturnType(), inFlight[replica]);
+        });
+    }
+
+    public void pinToPrimary() {
+        pinnedUntil.set(System.currentTimeMillis() + pinMillis);
+    }
+
+    public int inFlight(int replica) {
+        return inFlight[replica].get();
+    }
+
+    private boolean isPinned() {
+        Long until = pinnedUntil.get();
+        if (until == null) return false;
+        if (System.currentTimeMillis() < until) return true;
+        pinnedUntil.remove();
+        return false;
+    }
+
+    int chooseReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), inFlight.length);
+        if (balancing == Balancing.ROUND_ROBIN) return start;
+        int best = start;
+        for (int i = 1; i < inFlight.length; i++) {
+            int candidate = (start + i) % inFlight.length;
+            if (inFlight[candidate].get() < inFlight[best].get()) best = candidate;
+        }
+        return best;
+    }
+
+    private Statement pinOnWrite(Statement statement, Class<?> type, String preparedSql) {
+        return (Statement) proxy(type, (proxy, method, args) -> {
+            Object result = invoke(statement, method, args);
+            if (WRITES.contains(method.getName())) pinToPrimary();
+            else if (method.getName().equals("executeQuery")) {
+                String sql = args != null && args.length > 0 ? (String) args[0] : preparedSql;
+                if (modifies(sql)) pinToPrimary();
+            }
+            return result;
+        });
+    }
+
+    static boolean modifies(String sql) {
+        return sql != null && MODIFYING.matcher(sql).find();
+    }
+
+    private static Statement countInFlight(Statement statement, Class<?> type, AtomicInteger counter) {
+        return (Statement) proxy(type, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) return invoke(statement, method, args);
+            counter.incrementAndGet();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                counter.decrementAndGet();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(ReplicatedDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
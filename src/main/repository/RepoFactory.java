@@ -7,24 +7,89 @@ public class RepoFactory {
     private ReadingRepo readingRepo;
     private BookRepo bookRepo;
     private UserRepo userRepo;
+    private ReservationRepo reservationRepo;
+    private AuthorRepo authorRepo;
+    private PublisherRepo publisherRepo;
+    private BookChangeLogRepo bookChangeLogRepo;
+    private ReadingArchiveRepo readingArchiveRepo;
+    private AnalyticsRepo analyticsRepo;
+    private ReadingKeyMigration readingKeyMigration;
+    private AuditRepo auditRepo;
 
     public RepoFactory(BaseDataSource baseDataSource) {
         this.baseDataSource = baseDataSource;
     }
 
     public ReadingRepo getReadingRepo() throws SQLException, ClassNotFoundException {
-        if (readingRepo == null) readingRepo = new ReadingRepo(baseDataSource, getBookRepo());
+        if (readingRepo == null) {
+            getReadingKeyMigration().install();
+            readingRepo = new ReadingRepo(baseDataSource, getBookRepo());
+        }
         return readingRepo;
     }
 
     public BookRepo getBookRepo() throws SQLException, ClassNotFoundException {
-        if (bookRepo == null)
-            bookRepo = new BookRepo(baseDataSource, new PublisherRepo(baseDataSource), new AuthorRepo(baseDataSource));
+        if (bookRepo == null) {
+            bookRepo = new BookRepo(baseDataSource, getPublisherRepo(), getAuthorRepo());
+            bookRepo.installSchema();
+        }
         return bookRepo;
     }
 
+    public ReadingRepo newReadingRepo() throws SQLException, ClassNotFoundException {
+        getReadingRepo();
+        return new ReadingRepo(baseDataSource, getBookRepo());
+    }
+
+    public BookHydrator newBookHydrator(int parallelism, int batchSize) throws SQLException, ClassNotFoundException {
+        return new BookHydrator(baseDataSource, getAuthorRepo(), getPublisherRepo(), parallelism, batchSize);
+    }
+
+    public AuthorRepo getAuthorRepo() throws SQLException, ClassNotFoundException {
+        if (authorRepo == null) authorRepo = new AuthorRepo(baseDataSource);
+        return authorRepo;
+    }
+
+    public PublisherRepo getPublisherRepo() throws SQLException, ClassNotFoundException {
+        if (publisherRepo == null) publisherRepo = new PublisherRepo(baseDataSource);
+        return publisherRepo;
+    }
+
     public UserRepo getUserRepo() throws SQLException, ClassNotFoundException {
         if (userRepo == null) userRepo = new UserRepo(baseDataSource);
         return userRepo;
     }
+
+    public ReservationRepo getReservationRepo() throws SQLException, ClassNotFoundException {
+        if (reservationRepo == null) {
+            reservationRepo = new ReservationRepo(baseDataSource);
+            reservationRepo.install();
+        }
+        return reservationRepo;
+    }
+
+    public BookChangeLogRepo getBookChangeLogRepo() throws SQLException, ClassNotFoundException {
+        if (bookChangeLogRepo == null) bookChangeLogRepo = new BookChangeLogRepo(baseDataSource);
+        return bookChangeLogRepo;
+    }
+
+    public ReadingKeyMigration getReadingKeyMigration() throws SQLException, ClassNotFoundException {
+        if (readingKeyMigration == null) readingKeyMigration = new ReadingKeyMigration(baseDataSource);
+        return readingKeyMigration;
+    }
+
+    public ReadingArchiveRepo getReadingArchiveRepo() throws SQLException, ClassNotFoundException {
+        if (readingArchiveRepo == null) readingArchiveRepo = new ReadingArchiveRepo(baseDataSource);
+        return readingArchiveRepo;
+    }
+
+    public AnalyticsRepo getAnalyticsRepo() throws SQLException, ClassNotFoundException {
+        if (analyticsRepo == null) analyticsRepo = new AnalyticsRepo(baseDataSource);
+        return analyticsRepo;
+    }
+
+    public AuditRepo getAuditRepo() throws SQLException, ClassNotFoundException {
+        if (auditRepo == null) auditRepo = new AuditRepo(baseDataSource);
+        return auditRepo;
+    }
 }
@@ -0,0 +1,67 @@
+package main.repository;
+
+import main.model.Reservation;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReservationRepo {
+    static final String WAITING = "WAITING";
+    static final String FULFILLED = "FULFILLED";
+    static final String CANCELLED = "CANCELLED";
+
+    private final Connection connection;
+
+    public ReservationRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+    }
+
+    public void install() throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("create table if not exists reservation(id serial primary key, username varchar not null, " +
+                "book_id int not null, title varchar, reserved_date timestamp not null, status varchar not null)");
+        statement.executeUpdate("alter table reservation add column if not exists title varchar");
+        statement.executeUpdate("update reservation r set title=b.name from book b where b.id=r.book_id and r.title is null");
+        statement.executeUpdate("create index if not exists reservation_waiting_title_idx on reservation(lower(title)) where status='" + WAITING + "'");
+    }
+
+    public boolean save(Reservation reservation) throws SQLException {
+        String sql = "insert into reservation(username,book_id,title,reserved_date,status) values(?,?,?,?,?)";
+        PreparedStatement preparedStatement = connection.prepareStatement(sql, new String[]{"id"});
+        preparedStatement.setString(1, reservation.getUsername());
+        preparedStatement.setInt(2, reservation.getBookId());
+        preparedStatement.setString(3, reservation.getTitle());
+        preparedStatement.setTimestamp(4, new Timestamp(reservation.getReservedDate().getTime()));
+        preparedStatement.setString(5, WAITING);
+        boolean saved = preparedStatement.executeUpdate() > 0;
+        ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+        if (generatedKeys.next()) reservation.setId(generatedKeys.getInt(1));
+        return saved;
+    }
+
+    public boolean cancel(Reservation reservation) throws SQLException {
+        String sql = "update reservation set status=? where id=? and status=?";
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        preparedStatement.setString(1, CANCELLED);
+        preparedStatement.setInt(2, reservation.getId());
+        preparedStatement.setString(3, WAITING);
+        return preparedStatement.executeUpdate() > 0;
+    }
+
+    public List<Reservation> findWaitingByTitle(String title) throws SQLException {
+        String sql = "select id,username,book_id,title,reserved_date from reservation where lower(title)=? and status=? order by id";
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        preparedStatement.setString(1, title.toLowerCase());
+        preparedStatement.setString(2, WAITING);
+        ResultSet resultSet = preparedStatement.executeQuery();
+        List<Reservation> reservations = new ArrayList<>();
+        while (resultSet.next()) {
+            Reservation reservation = new Reservation(resultSet.getString("username"), resultSet.getInt("book_id"),
+                    resultSet.getString("title"), new java.util.Date(resultSet.getTimestamp("reserved_date").getTime()));
+            reservation.setId(resultSet.getInt("id"));
+            reservations.add(reservation);
+        }
+        return reservations;
+    }
+}
@@ -0,0 +1,25 @@
+package main.repository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class ShardedRepoFactory {
+    private final Map<String, RepoFactory> shards = new LinkedHashMap<>();
+
+    public ShardedRepoFactory(Map<String, BaseDataSource> dataSources) {
+        for (Map.Entry<String, BaseDataSource> dataSource : dataSources.entrySet()) {
+            shards.put(dataSource.getKey(), new RepoFactory(dataSource.getValue()));
+        }
+    }
+
+    public RepoFactory forBranch(String branch) throws Exception {
+        RepoFactory repoFactory = shards.get(branch);
+        if (repoFactory == null) throw new Exception("Unknown branch: " + branch);
+        return repoFactory;
+    }
+
+    public Set<String> getBranches() {
+        return shards.keySet();
+    }
+}
@@ -0,0 +1,30 @@
+package main.repository;
+
+import java.sql.SQLException;
+
+public class StaleBookException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    private final int bookId;
+    private final int expectedVersion;
+    private final int actualVersion;
+
+    public StaleBookException(int bookId, int expectedVersion, int actualVersion) {
+        super("Book " + bookId + " was changed concurrently (expected version " + expectedVersion + ", found " + actualVersion + ")");
+        this.bookId = bookId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
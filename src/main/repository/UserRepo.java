@@ -4,6 +4,7 @@ import main.model.Permission;
 import main.model.User;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -12,16 +13,18 @@ import java.util.List;
 
 public class UserRepo {
     private Connection connection;
+    private Connection readConnection;
 
     public UserRepo(BaseDataSource dataSource) throws SQLException, ClassNotFoundException {
         connection = dataSource.getConnection();
+        readConnection = dataSource.getReadConnection(connection);
     }
 
     public User findByUsernameAndPassword(String username, String password) {
         ResultSet resultSet = null;
         try {
-            Statement statement = connection.createStatement();
-            String sql = "select u.username,r.permissions from \"user\" u join role r on u.role = r.id and username='" + username + "' and password='" + password + "'";
+            Statement statement = readConnection.createStatement();
+            String sql = "select u.id,u.username,r.permissions from \"user\" u join role r on u.role = r.id and username='" + username + "' and password='" + password + "'";
             resultSet = statement.executeQuery(sql);
         } catch (SQLException e) {
             e.printStackTrace();
@@ -29,6 +32,13 @@ public class UserRepo {
         return buildUserFromResultSet(resultSet);
     }
 
+    public int findIdByUsername(String username) throws SQLException {
+        PreparedStatement statement = readConnection.prepareStatement("select id from \"user\" where username=?");
+        statement.setString(1, username);
+        ResultSet resultSet = statement.executeQuery();
+        return resultSet.next() ? resultSet.getInt(1) : 0;
+    }
+
     private User buildUserFromResultSet(ResultSet resultSet) {
         User user = null;
         try {
@@ -40,6 +50,7 @@ public class UserRepo {
                     permissions.add(Permission.valueOf(permissionValue));
                 }
                 user = new User(username, permissions);
+                user.setId(resultSet.getInt("id"));
             }
         } catch (SQLException e) {
             e.printStackTrace();
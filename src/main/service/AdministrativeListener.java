@@ -0,0 +1,10 @@
+package main.service;
+
+import main.model.Book;
+import main.model.User;
+
+public interface AdministrativeListener {
+    void bookAdded(User user, Book book);
+
+    void bookRemoved(User user, Book book);
+}
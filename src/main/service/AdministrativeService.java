@@ -5,15 +5,25 @@ import main.repository.BookRepo;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AdministrativeService {
 
     private final BookRepo bookRepo;
+    private final List<AdministrativeListener> listeners = new CopyOnWriteArrayList<>();
 
     public AdministrativeService(BookRepo bookRepo) {
         this.bookRepo = bookRepo;
     }
 
+    public void addListener(AdministrativeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AdministrativeListener listener) {
+        listeners.remove(listener);
+    }
+
     public Book addBook(User user, String name, List<String> authorNames, String publisherName) throws Exception {
         if (user == null) throw new NullPointerException("Null User Found");
         if (!user.isAuthorized(Permission.ADD_BOOK)) throw new Exception("User Not Authorized");
@@ -28,8 +38,11 @@ public class AdministrativeService {
         }
         Publisher publisher = new Publisher(publisherName);
 
-        Book book = new Book(name, authors, publisher);
-        return bookRepo.save(book);
+        Book book = bookRepo.save(new Book(name, authors, publisher));
+        for (AdministrativeListener listener : listeners) {
+            listener.bookAdded(user, book);
+        }
+        return book;
 
     }
 
@@ -42,7 +55,13 @@ public class AdministrativeService {
             throw new Exception("Book should have name");
         if (book.getPublisher() == null || book.getPublisher().getName() == null || book.getPublisher().getName().trim().length() < 1)
             throw new Exception("Book should have publisher name");
-        return bookRepo.delete(book);
+        boolean deleted = bookRepo.delete(book);
+        if (deleted) {
+            for (AdministrativeListener listener : listeners) {
+                listener.bookRemoved(user, book);
+            }
+        }
+        return deleted;
     }
 
 }
@@ -0,0 +1,122 @@
+package main.service;
+
+import main.model.AuditEvent;
+import main.model.Book;
+import main.model.Reading;
+import main.model.User;
+import main.repository.AuditSink;
+import main.util.RingBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class AuditLog implements CirculationListener, AdministrativeListener {
+    public enum Backpressure {
+        DROP,
+        BLOCK
+    }
+
+    private static final int BATCH_SIZE = 512;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final RingBuffer<AuditEvent> buffer;
+    private final AuditSink sink;
+    private final Backpressure backpressure;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AuditLog(AuditSink sink, int capacity, Backpressure backpressure) {
+        this.buffer = new RingBuffer<>(capacity);
+        this.sink = sink;
+        this.backpressure = backpressure;
+        writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void record(String actor, String action, String subject) {
+        AuditEvent event = new AuditEvent(System.currentTimeMillis(), actor, action, subject);
+        while (!buffer.offer(event)) {
+            if (backpressure == Backpressure.DROP || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BLOCK_NANOS);
+        }
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public void close() throws Exception {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        sink.close();
+    }
+
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "audit-shutdown"));
+    }
+
+    @Override
+    public void bookBorrowed(Reading reading) {
+        record(reading.getUsername(), "BORROW", reading.getBook().getId() + ":" + reading.getBookName());
+    }
+
+    @Override
+    public void bookReturned(Reading reading) {
+        record(reading.getUsername(), "RETURN", reading.getBook().getId() + ":" + reading.getBookName());
+    }
+
+    @Override
+    public void bookAdded(User user, Book book) {
+        record(user.getUsername(), "ADD_BOOK", book.getId() + ":" + book.getName());
+    }
+
+    @Override
+    public void bookRemoved(User user, Book book) {
+        record(user.getUsername(), "REMOVE_BOOK", book.getId() + ":" + book.getName());
+    }
+
+    private void drain() {
+        List<AuditEvent> batch = new ArrayList<>(BATCH_SIZE);
+        long reportedDrops = 0;
+        while (running || !buffer.isEmpty()) {
+            int drained = buffer.drainTo(batch, BATCH_SIZE);
+            if (drained > 0) {
+                write(batch);
+                batch.clear();
+            }
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                write(Collections.singletonList(new AuditEvent(System.currentTimeMillis(), null, "DROPPED", String.valueOf(drops - reportedDrops))));
+                reportedDrops = drops;
+            }
+            if (drained == 0) LockSupport.parkNanos(IDLE_NANOS);
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        try {
+            sink.write(batch);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
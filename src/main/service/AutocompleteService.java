@@ -0,0 +1,116 @@
+package main.service;
+
+import main.catalog.ColumnarCatalog;
+import main.catalog.CompletionTrie;
+import main.model.Author;
+import main.model.Book;
+import main.model.BookStatus;
+import main.repository.BookChangeListener;
+import main.repository.ReadingRepo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class AutocompleteService implements BookChangeListener {
+    private final CompletionTrie trie = new CompletionTrie();
+    private final Map<Integer, Suggestion> suggestions = new HashMap<>();
+
+    public static AutocompleteService build(ColumnarCatalog catalog, ReadingRepo readingRepo) throws Exception {
+        Map<Integer, Long> borrows = readingRepo.countBorrowsByBook();
+        AutocompleteService service = new AutocompleteService();
+        catalog.forEachEntry((id, title, authorNames, status) -> {
+            Long borrowCount = borrows.get(id);
+            service.add(id, new Suggestion(title, authorNames, borrowCount == null ? 0 : borrowCount, status));
+        });
+        return service;
+    }
+
+    public List<String> suggest(String prefix, int limit) throws Exception {
+        if (prefix == null) throw new Exception("Null Criteria Found");
+        if (prefix.trim().length() < 1) throw new Exception("Criteria Should be atleast one character");
+        if (limit < 1) throw new Exception("Limit should be atleast one");
+        return trie.complete(prefix.trim(), limit);
+    }
+
+    @Override
+    public synchronized void bookSaved(Book book, Integer[] authorIds, int publisherId) {
+        List<String> authorNames = new ArrayList<>();
+        for (Author author : book.getAuthors()) {
+            authorNames.add(author.getName());
+        }
+        Suggestion previous = suggestions.get(book.getId());
+        if (previous == null) {
+            add(book.getId(), new Suggestion(book.getName(), authorNames, 0, book.getBookStatus()));
+            return;
+        }
+        if (!previous.title.equals(book.getName()) || !previous.authorNames.equals(authorNames)) {
+            remove(book.getId());
+            add(book.getId(), new Suggestion(book.getName(), authorNames, previous.borrows, previous.status));
+        }
+        bookStatusChanged(book.getId(), book.getBookStatus(), book.getVersion());
+    }
+
+    @Override
+    public synchronized void bookDeleted(int bookId) {
+        remove(bookId);
+    }
+
+    @Override
+    public synchronized void bookStatusChanged(int bookId, BookStatus status, int version) {
+        Suggestion suggestion = suggestions.get(bookId);
+        if (suggestion == null) return;
+        if (suggestion.status == BookStatus.AVAILABLE && status == BookStatus.ISSUED) {
+            suggestion.borrows++;
+            trie.addWeight(suggestion.title, 1);
+            for (String authorName : suggestion.authorNames) {
+                trie.addWeight(authorName, 1);
+            }
+        }
+        suggestion.status = status;
+    }
+
+    @Override
+    public synchronized void booksRetained(Set<Integer> bookIds) {
+        for (Integer bookId : new ArrayList<>(suggestions.keySet())) {
+            if (!bookIds.contains(bookId)) remove(bookId);
+        }
+    }
+
+    private synchronized void add(int bookId, Suggestion suggestion) {
+        suggestions.put(bookId, suggestion);
+        trie.add(suggestion.title, suggestion.weight());
+        for (String authorName : suggestion.authorNames) {
+            trie.add(authorName, suggestion.weight());
+        }
+    }
+
+    private synchronized void remove(int bookId) {
+        Suggestion suggestion = suggestions.remove(bookId);
+        if (suggestion == null) return;
+        trie.remove(suggestion.title, suggestion.weight());
+        for (String authorName : suggestion.authorNames) {
+            trie.remove(authorName, suggestion.weight());
+        }
+    }
+
+    private static class Suggestion {
+        private final String title;
+        private final List<String> authorNames;
+        private long borrows;
+        private BookStatus status;
+
+        Suggestion(String title, List<String> authorNames, long borrows, BookStatus status) {
+            this.title = title;
+            this.authorNames = authorNames;
+            this.borrows = borrows;
+            this.status = status;
+        }
+
+        long weight() {
+            return 1 + borrows;
+        }
+    }
+}
@@ -1,20 +1,92 @@
 package main.service;
 
+import main.catalog.ColumnarCatalog;
+import main.catalog.FuzzyTitleIndex;
+import main.catalog.SearchHit;
 import main.model.Book;
+import main.model.BookStatus;
+import main.model.BookSummary;
 import main.repository.BookRepo;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class BookSearchService {
     private BookRepo bookRepo;
+    private ColumnarCatalog catalog;
+    private FuzzyTitleIndex fuzzyIndex;
 
     public BookSearchService(BookRepo bookRepo) {
+        this(bookRepo, null, null);
+    }
+
+    public BookSearchService(BookRepo bookRepo, ColumnarCatalog catalog, FuzzyTitleIndex fuzzyIndex) {
         this.bookRepo = bookRepo;
+        this.catalog = catalog;
+        this.fuzzyIndex = fuzzyIndex;
     }
 
     public List<Book> searchBookByName(String name) throws Exception {
-        if (name == null) throw new Exception("Null Criteria Found");
-        if (name.trim().length() < 1) throw new Exception("Criteria Should be atleast one character");
-        return bookRepo.findBooksByName(name);
+        return searchBookByName(name, null);
+    }
+
+    public List<Book> searchBookByName(String name, BookStatus status) throws Exception {
+        validateCriteria(name);
+        if (catalog != null) return catalog.findBooksByName(name, status);
+        return bookRepo.findBooksByName(name, status);
+    }
+
+    public List<Book> searchBookByAuthor(String authorName, BookStatus status) throws Exception {
+        validateCriteria(authorName);
+        if (catalog != null) return catalog.findBooksByAuthor(authorName.trim(), status);
+        return bookRepo.findBooksByAuthor(authorName.trim(), status);
+    }
+
+    public List<Book> searchBookByPublisher(String publisherName, BookStatus status) throws Exception {
+        validateCriteria(publisherName);
+        if (catalog != null) return catalog.findBooksByPublisher(publisherName.trim(), status);
+        return bookRepo.findBooksByPublisher(publisherName.trim(), status);
+    }
+
+    public List<BookSummary> searchSummariesByName(String name, BookStatus status) throws Exception {
+        validateCriteria(name);
+        if (catalog != null) return catalog.findSummariesByName(name, status);
+        return bookRepo.findSummariesByName(name, status);
+    }
+
+    public List<Book> searchBookByNameFuzzy(String name, int limit) throws Exception {
+        validateCriteria(name);
+        if (limit < 1) throw new Exception("Limit should be atleast one");
+        if (fuzzyIndex == null) {
+            List<Book> books = searchBookByName(name);
+            return books.size() > limit ? books.subList(0, limit) : books;
+        }
+        List<Book> books = new ArrayList<>();
+        for (SearchHit hit : searchHitsByNameFuzzy(name, limit)) {
+            Book book = findHit(hit);
+            if (book != null) books.add(book);
+        }
+        return books;
+    }
+
+    public List<SearchHit> searchHitsByNameFuzzy(String name, int limit) throws Exception {
+        validateCriteria(name);
+        if (limit < 1) throw new Exception("Limit should be atleast one");
+        if (fuzzyIndex != null) return fuzzyIndex.search(name, limit);
+        List<SearchHit> hits = new ArrayList<>();
+        for (Book book : searchBookByName(name)) {
+            if (hits.size() == limit) break;
+            hits.add(new SearchHit(book.getId(), 0, book.getName().length()));
+        }
+        return hits;
+    }
+
+    public Book findHit(SearchHit hit) throws Exception {
+        return catalog != null ? catalog.findById(hit.getBookId()) : bookRepo.findById(hit.getBookId());
+    }
+
+    private void validateCriteria(String criteria) throws Exception {
+        if (criteria == null) throw new Exception("Null Criteria Found");
+        if (criteria.trim().length() < 1) throw new Exception("Criteria Should be atleast one character");
     }
 }
@@ -0,0 +1,204 @@
+package main.service;
+
+import main.model.Book;
+import main.model.Reading;
+import main.repository.AnalyticsRepo;
+import main.util.SpaceSaving;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CirculationAnalytics implements CirculationListener {
+    private final AnalyticsRepo analyticsRepo;
+    private final SpaceSaving<String> mostBorrowed;
+    private final ConcurrentMap<String, LongAdder> borrowsByBook = new ConcurrentHashMap<>();
+    private final Set<String> unsavedBooks = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, LongAdder> activeLoansByUser = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, LongAdder> overdueByPublisher = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, String> publisherNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> unsavedPublisherIds = new ConcurrentHashMap<>();
+    private final AtomicInteger lastUnsavedPublisherId = new AtomicInteger();
+    private final Map<String, Loan> loans = new HashMap<>();
+    private final PriorityQueue<Loan> byDueDate = new PriorityQueue<>(Comparator.comparingLong(loan -> loan.dueDate));
+    private ScheduledExecutorService scheduler;
+
+    public CirculationAnalytics(AnalyticsRepo analyticsRepo, int topK) {
+        this.analyticsRepo = analyticsRepo;
+        this.mostBorrowed = new SpaceSaving<>(topK);
+    }
+
+    public void load() throws Exception {
+        analyticsRepo.install();
+        for (Map.Entry<String, Long> borrows : analyticsRepo.findBorrowCounts().entrySet()) {
+            recordBorrows(borrows.getKey(), borrows.getValue());
+        }
+        unsavedBooks.clear();
+        analyticsRepo.forEachActiveLoan((bookId, username, publisherId, publisherName, dueDate) -> {
+            publisherNames.put(publisherId, publisherName);
+            openLoan(bookId, username, publisherId, dueDate.getTime());
+        });
+    }
+
+    @Override
+    public void bookBorrowed(Reading reading) {
+        recordBorrows(reading.getBookName(), 1);
+        Book book = reading.getBook();
+        openLoan(book.getId(), reading.getUsername(), publisherIdOf(book), reading.getDueDate().getTime());
+    }
+
+    private int publisherIdOf(Book book) {
+        if (book.getPublisherId() != 0) {
+            if (book.hasLoadedAssociations()) publisherNames.putIfAbsent(book.getPublisherId(), book.getPublisher().getName());
+            return book.getPublisherId();
+        }
+        if (!book.hasLoadedAssociations()) return 0;
+        String name = book.getPublisher().getName();
+        int id = unsavedPublisherIds.computeIfAbsent(name, n -> lastUnsavedPublisherId.decrementAndGet());
+        publisherNames.putIfAbsent(id, name);
+        return id;
+    }
+
+    @Override
+    public void bookReturned(Reading reading) {
+        closeLoan(reading.getBook().getId(), reading.getUsername());
+    }
+
+    public List<SpaceSaving.Counter<String>> mostBorrowedBooks(int limit) {
+        return mostBorrowed.top(limit);
+    }
+
+    public long borrowCount(String bookName) {
+        return sum(borrowsByBook, bookName);
+    }
+
+    public long activeLoans(String username) {
+        return sum(activeLoansByUser, username);
+    }
+
+    public long overdueCount(String publisherName) throws Exception {
+        Long overdue = overdueByPublisher().get(publisherName);
+        return overdue == null ? 0 : overdue;
+    }
+
+    public Map<String, Long> overdueByPublisher() throws Exception {
+        advanceClock(System.currentTimeMillis());
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Map.Entry<Integer, LongAdder> count : overdueByPublisher.entrySet()) {
+            if (count.getValue().sum() > 0) counts.put(count.getKey(), count.getValue().sum());
+        }
+        Set<Integer> unnamed = new HashSet<>(counts.keySet());
+        unnamed.removeAll(publisherNames.keySet());
+        if (!unnamed.isEmpty()) publisherNames.putAll(analyticsRepo.findPublisherNames(unnamed));
+        Map<String, Long> overdue = new HashMap<>();
+        for (Map.Entry<Integer, Long> count : counts.entrySet()) {
+            overdue.merge(publisherNames.get(count.getKey()), count.getValue(), Long::sum);
+        }
+        return overdue;
+    }
+
+    public void persist() throws Exception {
+        Map<String, Long> counts = new HashMap<>();
+        for (Iterator<String> books = unsavedBooks.iterator(); books.hasNext(); ) {
+            String bookName = books.next();
+            books.remove();
+            counts.put(bookName, borrowCount(bookName));
+        }
+        if (!counts.isEmpty()) analyticsRepo.saveBorrowCounts(counts);
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "circulation-analytics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                advanceClock(System.currentTimeMillis());
+                persist();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    public synchronized void stop() throws Exception {
+        if (scheduler != null) scheduler.shutdown();
+        scheduler = null;
+        persist();
+    }
+
+    void advanceClock(long now) {
+        synchronized (loans) {
+            while (!byDueDate.isEmpty() && byDueDate.peek().dueDate < now) {
+                Loan loan = byDueDate.poll();
+                if (loan.closed) continue;
+                loan.overdue = true;
+                if (loan.publisherId != 0) counter(overdueByPublisher, loan.publisherId).increment();
+            }
+        }
+    }
+
+    private void recordBorrows(String bookName, long borrows) {
+        counter(borrowsByBook, bookName).add(borrows);
+        unsavedBooks.add(bookName);
+        mostBorrowed.offer(bookName, borrows);
+    }
+
+    private void openLoan(int bookId, String username, int publisherId, long dueDate) {
+        counter(activeLoansByUser, username).increment();
+        Loan loan = new Loan(username, publisherId, dueDate);
+        synchronized (loans) {
+            Loan replaced = loans.put(loanKey(bookId, username), loan);
+            if (replaced != null) close(replaced);
+            byDueDate.add(loan);
+        }
+    }
+
+    private void closeLoan(int bookId, String username) {
+        synchronized (loans) {
+            Loan loan = loans.remove(loanKey(bookId, username));
+            if (loan != null) close(loan);
+        }
+    }
+
+    private void close(Loan loan) {
+        loan.closed = true;
+        counter(activeLoansByUser, loan.username).decrement();
+        if (loan.overdue && loan.publisherId != 0) counter(overdueByPublisher, loan.publisherId).decrement();
+    }
+
+    private static String loanKey(int bookId, String username) {
+        return username + '\u0000' + bookId;
+    }
+
+    private static <K> LongAdder counter(ConcurrentMap<K, LongAdder> counters, K key) {
+        return counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static long sum(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    private static class Loan {
+        private final String username;
+        private final int publisherId;
+        private final long dueDate;
+        private boolean overdue;
+        private boolean closed;
+
+        Loan(String username, int publisherId, long dueDate) {
+            this.username = username;
+            this.publisherId = publisherId;
+            this.dueDate = dueDate;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package main.service;
+
+import main.model.Reading;
+
+public interface CirculationListener {
+    void bookBorrowed(Reading reading);
+
+    void bookReturned(Reading reading);
+}
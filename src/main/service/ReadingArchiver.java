@@ -0,0 +1,55 @@
+package main.service;
+
+import main.repository.ReadingArchiveRepo;
+
+import java.sql.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class ReadingArchiver {
+    private static final long DAY = 1000 * 60 * 60 * 24;
+
+    private final ReadingArchiveRepo archiveRepo;
+    private final long retentionDays;
+    private final int batchSize;
+    private ScheduledExecutorService scheduler;
+
+    public ReadingArchiver(ReadingArchiveRepo archiveRepo, long retentionDays, int batchSize) {
+        this.archiveRepo = archiveRepo;
+        this.retentionDays = retentionDays;
+        this.batchSize = batchSize;
+    }
+
+    public long archive() throws Exception {
+        Date cutoff = new Date(System.currentTimeMillis() - retentionDays * DAY);
+        long archived = 0;
+        int moved;
+        do {
+            moved = archiveRepo.archiveReturnedBefore(cutoff, batchSize);
+            archived += moved;
+        } while (moved == batchSize);
+        return archived;
+    }
+
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reading-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) scheduler.shutdown();
+        scheduler = null;
+    }
+}
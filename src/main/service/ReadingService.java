@@ -1,21 +1,47 @@
 package main.service;
 
-import main.model.Book;
-import main.model.Permission;
-import main.model.Reading;
-import main.model.User;
+import main.model.*;
 import main.repository.ReadingRepo;
+import main.repository.StaleBookException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 public class ReadingService {
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_BACKOFF_MILLIS = 5;
 
     private final ReadingRepo readingRepo;
+    private final ReservationService reservationService;
+    private final List<CirculationListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile WriteBehindCirculation writeBehind;
 
 
     public ReadingService(ReadingRepo readingRepo) {
+        this(readingRepo, null);
+    }
+
+    public ReadingService(ReadingRepo readingRepo, ReservationService reservationService) {
         this.readingRepo = readingRepo;
+        this.reservationService = reservationService;
+    }
+
+    public void addListener(CirculationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(CirculationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setWriteBehind(WriteBehindCirculation writeBehind) {
+        this.writeBehind = writeBehind;
     }
 
     public boolean borrowBook(User user, Book book) throws Exception {
@@ -29,7 +55,14 @@ public class ReadingService {
 
         Reading reading = new Reading(user, book, new Date(System.currentTimeMillis()));
         book.issue();
-        return readingRepo.save(reading);
+        if (writeBehind != null) {
+            writeBehind.borrowed(reading);
+            fireBorrowed(reading);
+            return true;
+        }
+        boolean saved = retryOnConflict(book, book::issue, () -> readingRepo.save(reading));
+        if (saved) fireBorrowed(reading);
+        return saved;
     }
 
     public boolean returnBook(User user, Book book) throws Exception {
@@ -37,12 +70,204 @@ public class ReadingService {
         if (user.getUsername() == null || user.getUsername().trim().length() < 1)
             throw new Exception("User should have a valid username");
         if (!user.isAuthorized(Permission.RETURN_BOOK)) throw new Exception("User not authorized to return book");
-        Reading reading = readingRepo.findByUserAndBook(user, book);
+        Reading reading = writeBehind != null ? writeBehind.findActive(user, book) : readingRepo.findByUserAndBook(user, book);
         if (reading == null) throw new Exception("User currently has no reading on the given book");
         if (book == null) throw new Exception("Null Book Found");
         if (book.getName() == null || book.getName().trim().length() < 1) throw new Exception("Book should have name");
         book.returned();
         reading.returnReading();
-        return readingRepo.update(reading);
+        if (reservationService != null && reservationService.hasWaiting(book)) {
+            reading = settle(reading);
+            if (handOverToWaiting(book, reading)) return true;
+        }
+        Reading returned = reading;
+        if (writeBehind != null) {
+            writeBehind.returned(reading);
+            fireReturned(reading);
+            return true;
+        }
+        boolean updated = retryOnConflict(book, book::returned, () -> readingRepo.update(returned));
+        if (updated) fireReturned(returned);
+        return updated;
+    }
+
+    public List<Reading> getReadingHistory(User user) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (user.getUsername() == null || user.getUsername().trim().length() < 1)
+            throw new Exception("User should have a valid username");
+        flushWriteBehind();
+        return readingRepo.findHistoryByUser(user);
+    }
+
+    public Map<Integer, Reading> findActiveReadings(User user, List<Book> books) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (books == null) throw new Exception("Null Books Found");
+        flushWriteBehind();
+        return readingRepo.findByUserAndBooks(user, books);
+    }
+
+    private boolean retryOnConflict(Book book, BookTransition transition, BookWrite write) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return write.apply();
+            } catch (StaleBookException e) {
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                long backoff = BASE_BACKOFF_MILLIS << (attempt - 1);
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+                if (!readingRepo.refresh(book)) throw new Exception("Book no longer exists");
+                transition.apply();
+            }
+        }
+    }
+
+    private interface BookTransition {
+        void apply() throws Exception;
+    }
+
+    private interface BookWrite {
+        boolean apply() throws Exception;
+    }
+
+    private void flushWriteBehind() throws Exception {
+        if (writeBehind != null) writeBehind.flush();
+    }
+
+    private Reading settle(Reading reading) throws Exception {
+        if (writeBehind == null) return reading;
+        writeBehind.flush();
+        Reading persisted = readingRepo.findByUserAndBook(reading.getUser(), reading.getBook());
+        if (persisted == null) throw new Exception("User currently has no reading on the given book");
+        persisted.setReturnedDate(reading.getReturnedDate());
+        return persisted;
+    }
+
+    private boolean handOverToWaiting(Book book, Reading returned) throws Exception {
+        if (reservationService == null) return false;
+        Reservation reservation;
+        while ((reservation = reservationService.nextFor(book)) != null) {
+            if (handOver(book, returned, reservation)) return true;
+        }
+        return false;
+    }
+
+    private boolean handOver(Book book, Reading returned, Reservation reservation) throws Exception {
+        Reading next = new Reading(new User(reservation.getUsername(), new ArrayList<Permission>()), book, new Date(System.currentTimeMillis()));
+        boolean handedOver;
+        try {
+            handedOver = readingRepo.handOver(returned, next, reservation);
+        } catch (Exception e) {
+            reservationService.restore(reservation);
+            throw e;
+        }
+        reservationService.changed(reservation);
+        if (!handedOver) return false;
+        book.setBookStatus(BookStatus.ISSUED);
+        fireReturned(returned);
+        fireBorrowed(next);
+        return true;
+    }
+
+    private void fireBorrowed(Reading reading) {
+        for (CirculationListener listener : listeners) {
+            listener.bookBorrowed(reading);
+        }
+    }
+
+    private void fireReturned(Reading reading) {
+        for (CirculationListener listener : listeners) {
+            listener.bookReturned(reading);
+        }
+    }
+
+    public List<ReadingOutcome> borrowBooks(User user, List<Book> books) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (user.getUsername() == null || user.getUsername().trim().length() < 1)
+            throw new Exception("User should have a valid username");
+        if (!user.isAuthorized(Permission.BORROW_BOOK)) throw new Exception("User not authorized to borrow book");
+        if (books == null) throw new Exception("Null Books Found");
+
+        ReadingOutcome[] outcomes = new ReadingOutcome[books.size()];
+        List<Reading> readings = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Date borrowedDate = new Date(System.currentTimeMillis());
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (book == null) outcomes[i] = ReadingOutcome.failure(null, "Null Book Found");
+            else if (!book.isAvailable()) outcomes[i] = ReadingOutcome.failure(book, "Book Not available");
+            else if (book.getName() == null || book.getName().trim().length() < 1)
+                outcomes[i] = ReadingOutcome.failure(book, "Book should have name");
+            else {
+                readings.add(new Reading(user, book, borrowedDate));
+                positions.add(i);
+            }
+        }
+        if (readings.isEmpty()) return Arrays.asList(outcomes);
+
+        flushWriteBehind();
+        boolean[] claimed = readingRepo.saveAll(readings);
+        for (int i = 0; i < readings.size(); i++) {
+            Reading reading = readings.get(i);
+            if (claimed[i]) {
+                reading.getBook().setBookStatus(BookStatus.ISSUED);
+                outcomes[positions.get(i)] = ReadingOutcome.success(reading);
+                fireBorrowed(reading);
+            } else {
+                outcomes[positions.get(i)] = ReadingOutcome.failure(reading.getBook(), "Book Not available");
+            }
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    public List<ReadingOutcome> returnBooks(User user, List<Book> books) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (user.getUsername() == null || user.getUsername().trim().length() < 1)
+            throw new Exception("User should have a valid username");
+        if (!user.isAuthorized(Permission.RETURN_BOOK)) throw new Exception("User not authorized to return book");
+        if (books == null) throw new Exception("Null Books Found");
+
+        ReadingOutcome[] outcomes = new ReadingOutcome[books.size()];
+        List<Book> validBooks = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            Book book = books.get(i);
+            if (book == null) outcomes[i] = ReadingOutcome.failure(null, "Null Book Found");
+            else if (book.getName() == null || book.getName().trim().length() < 1)
+                outcomes[i] = ReadingOutcome.failure(book, "Book should have name");
+            else validBooks.add(book);
+        }
+        if (validBooks.isEmpty()) return Arrays.asList(outcomes);
+
+        flushWriteBehind();
+        Map<Integer, Reading> activeReadings = readingRepo.findByUserAndBooks(user, validBooks);
+        List<Reading> readings = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            if (outcomes[i] != null) continue;
+            Reading reading = activeReadings.remove(books.get(i).getId());
+            if (reading == null) {
+                outcomes[i] = ReadingOutcome.failure(books.get(i), "User currently has no reading on the given book");
+                continue;
+            }
+            reading.returnReading();
+            if (handOverToWaiting(reading.getBook(), reading)) {
+                outcomes[i] = ReadingOutcome.success(reading);
+                continue;
+            }
+            readings.add(reading);
+            positions.add(i);
+        }
+        if (readings.isEmpty()) return Arrays.asList(outcomes);
+
+        boolean[] released = readingRepo.updateAll(readings);
+        for (int i = 0; i < readings.size(); i++) {
+            Reading reading = readings.get(i);
+            if (released[i]) {
+                reading.getBook().setBookStatus(BookStatus.AVAILABLE);
+                outcomes[positions.get(i)] = ReadingOutcome.success(reading);
+                fireReturned(reading);
+            } else {
+                outcomes[positions.get(i)] = ReadingOutcome.failure(reading.getBook(), "Book is not issued");
+            }
+        }
+        return Arrays.asList(outcomes);
     }
 }
@@ -0,0 +1,112 @@
+package main.service;
+
+import main.model.Book;
+import main.model.Permission;
+import main.model.Reservation;
+import main.model.User;
+import main.repository.Invalidation;
+import main.repository.InvalidationBus;
+import main.repository.ReservationRepo;
+
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+
+public class ReservationService {
+
+    private final ReservationRepo reservationRepo;
+    private final ConcurrentMap<String, Deque<Reservation>> queues = new ConcurrentHashMap<>();
+    private volatile InvalidationBus invalidationBus;
+
+    public ReservationService(ReservationRepo reservationRepo) {
+        this.reservationRepo = reservationRepo;
+    }
+
+    public void setInvalidationBus(InvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+    }
+
+    public void applyInvalidation(Invalidation invalidation) {
+        if (invalidation.getType() == Invalidation.Type.ALL) queues.clear();
+        if (invalidation.getType() != Invalidation.Type.RESERVATION) return;
+        queues.keySet().removeIf(title -> title.hashCode() == invalidation.getBookId());
+    }
+
+    public Reservation reserveBook(User user, Book book) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (user.getUsername() == null || user.getUsername().trim().length() < 1)
+            throw new Exception("User should have a valid username");
+        if (!user.isAuthorized(Permission.BORROW_BOOK)) throw new Exception("User not authorized to reserve book");
+        if (book == null) throw new Exception("Null Book Found");
+        if (book.isAvailable()) throw new Exception("Book is available, borrow it instead");
+
+        Deque<Reservation> queue = queueFor(book);
+        for (Reservation reservation : queue) {
+            if (reservation.getUsername().equals(user.getUsername()))
+                throw new Exception("Book already reserved by the user");
+        }
+        Reservation reservation = new Reservation(user.getUsername(), book.getId(), book.getName(), new Date(System.currentTimeMillis()));
+        if (!reservationRepo.save(reservation)) throw new Exception("Could not reserve the book");
+        queue.offerLast(reservation);
+        changed(reservation);
+        return reservation;
+    }
+
+    public boolean cancelReservation(User user, Book book) throws Exception {
+        if (user == null) throw new Exception("Null User Found");
+        if (book == null) throw new Exception("Null Book Found");
+        Deque<Reservation> queue = queueFor(book);
+        for (Reservation reservation : queue) {
+            if (reservation.getUsername().equals(user.getUsername())) {
+                queue.remove(reservation);
+                changed(reservation);
+                return reservationRepo.cancel(reservation);
+            }
+        }
+        return false;
+    }
+
+    public int positionOf(User user, Book book) throws Exception {
+        int position = 1;
+        for (Reservation reservation : queueFor(book)) {
+            if (reservation.getUsername().equals(user.getUsername())) return position;
+            position++;
+        }
+        return -1;
+    }
+
+    public boolean hasWaiting(Book book) throws Exception {
+        return !queueFor(book).isEmpty();
+    }
+
+    Reservation nextFor(Book book) throws Exception {
+        return queueFor(book).pollFirst();
+    }
+
+    void restore(Reservation reservation) {
+        Deque<Reservation> queue = queues.get(titleKey(reservation.getTitle()));
+        if (queue != null) queue.offerFirst(reservation);
+    }
+
+    void changed(Reservation reservation) {
+        InvalidationBus bus = invalidationBus;
+        if (bus != null) bus.publish(Invalidation.Type.RESERVATION, titleKey(reservation.getTitle()).hashCode(), null);
+    }
+
+    private Deque<Reservation> queueFor(Book book) throws Exception {
+        String title = titleKey(book.getName());
+        Deque<Reservation> queue = queues.get(title);
+        if (queue == null) {
+            Deque<Reservation> loaded = new ConcurrentLinkedDeque<>(reservationRepo.findWaitingByTitle(title));
+            queue = queues.putIfAbsent(title, loaded);
+            if (queue == null) queue = loaded;
+        }
+        return queue;
+    }
+
+    private static String titleKey(String title) {
+        return title == null ? "" : title.trim().toLowerCase();
+    }
+}
@@ -1,19 +1,69 @@
 package main.service;
 
+import main.catalog.CatalogSnapshotter;
+import main.catalog.ColumnarCatalog;
+import main.catalog.FuzzyTitleIndex;
+import main.model.User;
+import main.repository.AuditRepo;
+import main.repository.AuditSink;
 import main.repository.BaseDataSource;
+import main.repository.BookRepo;
+import main.repository.CirculationOutbox;
+import main.repository.InvalidationBus;
 import main.repository.RepoFactory;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 public class ServiceManager {
     private AdministrativeService administrativeService;
     private AuthenticationService authenticationService;
     private ReadingService readingService;
     private BookSearchService bookSearchService;
+    private ReservationService reservationService;
     private RepoFactory repoFactory;
+    private final boolean inMemoryCatalog;
+    private ColumnarCatalog catalog;
+    private Path catalogSnapshotFile;
+    private long catalogSnapshotMinutes;
+    private CatalogSnapshotter catalogSnapshotter;
+    private FuzzyTitleIndex fuzzyTitleIndex;
+    private AutocompleteService autocompleteService;
+    private ReadingArchiver readingArchiver;
+    private CirculationAnalytics circulationAnalytics;
+    private AuditLog auditLog;
+    private WriteBehindCirculation writeBehind;
+    private volatile boolean foreignUsers;
+    private final ConcurrentMap<String, Integer> localUserIds = new ConcurrentHashMap<>();
 
     public ServiceManager(BaseDataSource baseDataSource) {
-        repoFactory = new RepoFactory(baseDataSource);
+        this(baseDataSource, false);
+    }
+
+    public ServiceManager(BaseDataSource baseDataSource, boolean inMemoryCatalog) {
+        this(new RepoFactory(baseDataSource), inMemoryCatalog);
+    }
+
+    public ServiceManager(RepoFactory repoFactory, boolean inMemoryCatalog) {
+        this.repoFactory = repoFactory;
+        this.inMemoryCatalog = inMemoryCatalog;
+    }
+
+    void setForeignUsers(boolean foreignUsers) {
+        this.foreignUsers = foreignUsers;
+    }
+
+    public User localUser(User user) throws Exception {
+        if (!foreignUsers || user == null) return user;
+        Integer id = localUserIds.get(user.getUsername());
+        if (id == null) {
+            id = repoFactory.getUserRepo().findIdByUsername(user.getUsername());
+            if (id != 0) localUserIds.put(user.getUsername(), id);
+        }
+        return user.withId(id);
     }
 
     public AdministrativeService getAdministrativeService() throws SQLException, ClassNotFoundException {
@@ -27,12 +77,118 @@ public class ServiceManager {
     }
 
     public ReadingService getReadingService() throws SQLException, ClassNotFoundException {
-        if (readingService == null) readingService = new ReadingService(repoFactory.getReadingRepo());
+        if (readingService == null) readingService = new ReadingService(repoFactory.getReadingRepo(), getReservationService());
         return readingService;
     }
 
-    public BookSearchService getBookSearchService() throws SQLException, ClassNotFoundException {
-        if (bookSearchService == null) bookSearchService = new BookSearchService(repoFactory.getBookRepo());
+    public BookSearchService getBookSearchService() throws Exception {
+        if (bookSearchService == null)
+            bookSearchService = inMemoryCatalog
+                    ? new BookSearchService(repoFactory.getBookRepo(), getCatalog(), getFuzzyTitleIndex())
+                    : new BookSearchService(repoFactory.getBookRepo());
         return bookSearchService;
     }
+
+    public FuzzyTitleIndex getFuzzyTitleIndex() throws Exception {
+        if (fuzzyTitleIndex == null) {
+            fuzzyTitleIndex = FuzzyTitleIndex.build(getCatalog());
+            repoFactory.getBookRepo().addListener(fuzzyTitleIndex);
+        }
+        return fuzzyTitleIndex;
+    }
+
+    public AutocompleteService getAutocompleteService() throws Exception {
+        if (autocompleteService == null) {
+            autocompleteService = AutocompleteService.build(getCatalog(), repoFactory.getReadingRepo());
+            repoFactory.getBookRepo().addListener(autocompleteService);
+        }
+        return autocompleteService;
+    }
+
+    public CirculationAnalytics getCirculationAnalytics() throws Exception {
+        if (circulationAnalytics == null) {
+            circulationAnalytics = new CirculationAnalytics(repoFactory.getAnalyticsRepo(), 100);
+            circulationAnalytics.load();
+            getReadingService().addListener(circulationAnalytics);
+            circulationAnalytics.start(1, TimeUnit.MINUTES);
+        }
+        return circulationAnalytics;
+    }
+
+    public AuditLog enableAuditLog(AuditSink sink, int capacity, AuditLog.Backpressure backpressure) throws Exception {
+        if (auditLog != null) return auditLog;
+        auditLog = new AuditLog(sink, capacity, backpressure);
+        auditLog.closeOnShutdown();
+        getReadingService().addListener(auditLog);
+        getAdministrativeService().addListener(auditLog);
+        return auditLog;
+    }
+
+    public WriteBehindCirculation enableWriteBehind(Path journal, long flushMillis) throws Exception {
+        if (writeBehind != null) return writeBehind;
+        writeBehind = new WriteBehindCirculation(repoFactory.newReadingRepo(), new CirculationOutbox(journal));
+        writeBehind.recover();
+        getReadingService().setWriteBehind(writeBehind);
+        writeBehind.start(flushMillis, TimeUnit.MILLISECONDS);
+        writeBehind.stopOnShutdown();
+        return writeBehind;
+    }
+
+    public AuditRepo getAuditRepo() throws Exception {
+        AuditRepo auditRepo = repoFactory.getAuditRepo();
+        auditRepo.install();
+        return auditRepo;
+    }
+
+    public void enableCatalogSnapshot(Path file, long periodMinutes) {
+        this.catalogSnapshotFile = file;
+        this.catalogSnapshotMinutes = periodMinutes;
+    }
+
+    public long migrateReadingKeys(int batchSize) throws Exception {
+        return repoFactory.getReadingKeyMigration().run(batchSize);
+    }
+
+    public void enableReadingArchive(long retentionDays, long periodMinutes) throws Exception {
+        if (readingArchiver != null) return;
+        repoFactory.getReadingArchiveRepo().install();
+        readingArchiver = new ReadingArchiver(repoFactory.getReadingArchiveRepo(), retentionDays, 1000);
+        readingArchiver.start(periodMinutes, TimeUnit.MINUTES);
+    }
+
+    public void enableParallelHydration(int parallelism, int batchSize) throws Exception {
+        repoFactory.getBookRepo().setHydrator(repoFactory.newBookHydrator(parallelism, batchSize));
+    }
+
+    public void setLazyAssociations(boolean lazyAssociations) throws Exception {
+        repoFactory.getBookRepo().setLazyAssociations(lazyAssociations);
+    }
+
+    public void enableInvalidationBus(InvalidationBus invalidationBus, long windowMillis) throws Exception {
+        BookRepo bookRepo = repoFactory.getBookRepo();
+        bookRepo.setInvalidationBus(invalidationBus);
+        invalidationBus.subscribe(bookRepo::applyInvalidation);
+        ReservationService reservationService = getReservationService();
+        reservationService.setInvalidationBus(invalidationBus);
+        invalidationBus.subscribe(reservationService::applyInvalidation);
+        invalidationBus.start(windowMillis);
+    }
+
+    public ColumnarCatalog getCatalog() throws Exception {
+        if (catalog != null) return catalog;
+        if (catalogSnapshotFile == null) {
+            catalog = ColumnarCatalog.load(repoFactory.getBookRepo(), repoFactory.getAuthorRepo(), repoFactory.getPublisherRepo());
+            return catalog;
+        }
+        catalogSnapshotter = new CatalogSnapshotter(repoFactory.getBookRepo(), repoFactory.getAuthorRepo(),
+                repoFactory.getPublisherRepo(), repoFactory.getBookChangeLogRepo(), catalogSnapshotFile);
+        catalog = catalogSnapshotter.loadOrBuild();
+        catalogSnapshotter.start(catalog, catalogSnapshotMinutes, TimeUnit.MINUTES);
+        return catalog;
+    }
+
+    public ReservationService getReservationService() throws SQLException, ClassNotFoundException {
+        if (reservationService == null) reservationService = new ReservationService(repoFactory.getReservationRepo());
+        return reservationService;
+    }
 }
@@ -0,0 +1,124 @@
+package main.service;
+
+import main.catalog.SearchHit;
+import main.model.Book;
+import main.model.BookStatus;
+import main.model.BookSummary;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class ShardedBookSearchService extends BookSearchService {
+    private static final Comparator<Book> BY_NAME_AND_BRANCH = Comparator.comparing(Book::getName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(Book::getBranch);
+
+    private final Map<String, BookSearchService> branches;
+    private final ExecutorService executor;
+
+    public ShardedBookSearchService(Map<String, BookSearchService> branches, ExecutorService executor) {
+        super(null);
+        this.branches = branches;
+        this.executor = executor;
+    }
+
+    @Override
+    public List<Book> searchBookByName(String name) throws Exception {
+        return sorted(fanOut(service -> service.searchBookByName(name)));
+    }
+
+    @Override
+    public List<Book> searchBookByName(String name, BookStatus status) throws Exception {
+        return sorted(fanOut(service -> service.searchBookByName(name, status)));
+    }
+
+    @Override
+    public List<Book> searchBookByAuthor(String authorName, BookStatus status) throws Exception {
+        return sorted(fanOut(service -> service.searchBookByAuthor(authorName, status)));
+    }
+
+    @Override
+    public List<Book> searchBookByPublisher(String publisherName, BookStatus status) throws Exception {
+        return sorted(fanOut(service -> service.searchBookByPublisher(publisherName, status)));
+    }
+
+    @Override
+    public List<BookSummary> searchSummariesByName(String name, BookStatus status) throws Exception {
+        List<BookSummary> summaries = new ArrayList<>();
+        for (List<BookSummary> branchSummaries : fanOut(service -> service.searchSummariesByName(name, status)).values()) {
+            summaries.addAll(branchSummaries);
+        }
+        return summaries;
+    }
+
+    @Override
+    public List<Book> searchBookByNameFuzzy(String name, int limit) throws Exception {
+        List<Map.Entry<String, SearchHit>> ranked = new ArrayList<>();
+        for (Map.Entry<String, List<SearchHit>> branch : fanOut(service -> service.searchHitsByNameFuzzy(name, limit)).entrySet()) {
+            for (SearchHit hit : branch.getValue()) {
+                ranked.add(new AbstractMap.SimpleImmutableEntry<>(branch.getKey(), hit));
+            }
+        }
+        ranked.sort(Map.Entry.comparingByValue(SearchHit.BY_RELEVANCE));
+        List<Book> merged = new ArrayList<>();
+        for (Map.Entry<String, SearchHit> hit : ranked) {
+            if (merged.size() == limit) break;
+            Book book = branches.get(hit.getKey()).findHit(hit.getValue());
+            if (book == null) continue;
+            book.setBranch(hit.getKey());
+            merged.add(book);
+        }
+        return merged;
+    }
+
+    public List<Book> searchBookByNameInBranch(String branch, String name) throws Exception {
+        BookSearchService service = branches.get(branch);
+        if (service == null) throw new Exception("Unknown branch: " + branch);
+        return tagged(branch, service.searchBookByName(name));
+    }
+
+    private interface BranchSearch<T> {
+        List<T> search(BookSearchService service) throws Exception;
+    }
+
+    private <T> Map<String, List<T>> fanOut(BranchSearch<T> search) throws Exception {
+        Map<String, Future<List<T>>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, BookSearchService> branch : branches.entrySet()) {
+            futures.put(branch.getKey(), executor.submit(() -> search.search(branch.getValue())));
+        }
+        Map<String, List<T>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<List<T>>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), tagged(future.getKey(), future.getValue().get()));
+            } catch (ExecutionException e) {
+                for (Future<List<T>> pending : futures.values()) pending.cancel(true);
+                if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    private static <T> List<T> tagged(String branch, List<T> results) {
+        for (T result : results) {
+            if (result instanceof Book) ((Book) result).setBranch(branch);
+            else if (result instanceof BookSummary) ((BookSummary) result).setBranch(branch);
+        }
+        return results;
+    }
+
+    private static List<Book> sorted(Map<String, List<Book>> results) {
+        List<Book> merged = new ArrayList<>();
+        for (List<Book> books : results.values()) {
+            merged.addAll(books);
+        }
+        merged.sort(BY_NAME_AND_BRANCH);
+        return merged;
+    }
+}
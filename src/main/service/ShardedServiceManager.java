@@ -0,0 +1,58 @@
+package main.service;
+
+import main.repository.BaseDataSource;
+import main.repository.ShardedRepoFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ShardedServiceManager {
+    private final ShardedRepoFactory shardedRepoFactory;
+    private final Map<String, ServiceManager> serviceManagers = new LinkedHashMap<>();
+    private final boolean inMemoryCatalog;
+    private ShardedBookSearchService bookSearchService;
+    private ExecutorService fanOutExecutor;
+
+    public ShardedServiceManager(Map<String, BaseDataSource> dataSources, boolean inMemoryCatalog) throws Exception {
+        if (dataSources.isEmpty()) throw new Exception("Atleast one branch is required");
+        shardedRepoFactory = new ShardedRepoFactory(dataSources);
+        this.inMemoryCatalog = inMemoryCatalog;
+    }
+
+    public synchronized ServiceManager forBranch(String branch) throws Exception {
+        ServiceManager serviceManager = serviceManagers.get(branch);
+        if (serviceManager == null) {
+            serviceManager = new ServiceManager(shardedRepoFactory.forBranch(branch), inMemoryCatalog);
+            serviceManager.setForeignUsers(!branch.equals(getHomeBranch()));
+            serviceManagers.put(branch, serviceManager);
+        }
+        return serviceManager;
+    }
+
+    public Set<String> getBranches() {
+        return shardedRepoFactory.getBranches();
+    }
+
+    public String getHomeBranch() {
+        return getBranches().iterator().next();
+    }
+
+    public ShardedBookSearchService getBookSearchService() throws Exception {
+        if (bookSearchService == null) {
+            Map<String, BookSearchService> searchServices = new LinkedHashMap<>();
+            for (String branch : getBranches()) {
+                searchServices.put(branch, forBranch(branch).getBookSearchService());
+            }
+            fanOutExecutor = Executors.newFixedThreadPool(searchServices.size(), runnable -> {
+                Thread thread = new Thread(runnable, "branch-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+            bookSearchService = new ShardedBookSearchService(searchServices, fanOutExecutor);
+        }
+        return bookSearchService;
+    }
+}
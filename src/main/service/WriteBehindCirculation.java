@@ -0,0 +1,178 @@
+package main.service;
+
+import main.model.Book;
+import main.model.BookStatus;
+import main.model.Reading;
+import main.model.User;
+import main.repository.CirculationOutbox;
+import main.repository.OutboxEntry;
+import main.repository.ReadingRepo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindCirculation {
+    private final ReadingRepo readingRepo;
+    private final CirculationOutbox outbox;
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+
+    private final List<OutboxEntry> pending = new ArrayList<>();
+    private final Map<String, Loan> activeLoans = new HashMap<>();
+    private final Map<String, Long> pendingReturns = new HashMap<>();
+    private final Map<Integer, OutboxEntry> latestByBook = new HashMap<>();
+    private long nextSeq = 1;
+    private ScheduledExecutorService scheduler;
+
+    public WriteBehindCirculation(ReadingRepo readingRepo, CirculationOutbox outbox) {
+        this.readingRepo = readingRepo;
+        this.outbox = outbox;
+    }
+
+    public int recover() throws Exception {
+        readingRepo.installOutbox(outbox.getName());
+        long applied = readingRepo.appliedOutboxSeq(outbox.getName());
+        List<OutboxEntry> recovered = new ArrayList<>();
+        synchronized (lock) {
+            nextSeq = Math.max(nextSeq, applied + 1);
+            for (OutboxEntry entry : outbox.readAll()) {
+                nextSeq = Math.max(nextSeq, entry.getSeq() + 1);
+                if (entry.getSeq() > applied) recovered.add(entry);
+            }
+            pending.addAll(0, recovered);
+            outbox.rewrite(pending);
+        }
+        flush();
+        for (OutboxEntry entry : recovered) {
+            readingRepo.announceStatus(entry.getBookId(), statusAfter(entry));
+        }
+        return recovered.size();
+    }
+
+    public void borrowed(Reading reading) throws Exception {
+        String key = keyOf(reading.getUsername(), reading.getBook().getId());
+        synchronized (lock) {
+            OutboxEntry latest = latestByBook.get(reading.getBook().getId());
+            if (latest != null && latest.getType() == OutboxEntry.Type.BORROW) throw new Exception("Book Not available");
+            OutboxEntry entry = OutboxEntry.of(nextSeq, OutboxEntry.Type.BORROW, reading);
+            outbox.append(entry);
+            nextSeq++;
+            pending.add(entry);
+            latestByBook.put(entry.getBookId(), entry);
+            activeLoans.put(key, new Loan(entry.getSeq(), reading));
+        }
+        readingRepo.announceStatus(reading.getBook().getId(), BookStatus.ISSUED);
+    }
+
+    public void returned(Reading reading) throws Exception {
+        String key = keyOf(reading.getUsername(), reading.getBook().getId());
+        synchronized (lock) {
+            OutboxEntry entry = OutboxEntry.of(nextSeq, OutboxEntry.Type.RETURN, reading);
+            outbox.append(entry);
+            nextSeq++;
+            pending.add(entry);
+            latestByBook.put(entry.getBookId(), entry);
+            activeLoans.remove(key);
+            pendingReturns.put(key, entry.getSeq());
+        }
+        readingRepo.announceStatus(reading.getBook().getId(), BookStatus.AVAILABLE);
+    }
+
+    public Reading findActive(User user, Book book) throws Exception {
+        String key = keyOf(user.getUsername(), book.getId());
+        synchronized (lock) {
+            Loan loan = activeLoans.get(key);
+            if (loan != null) return loan.reading;
+            if (pendingReturns.containsKey(key)) return null;
+        }
+        return readingRepo.findByUserAndBook(user, book);
+    }
+
+    public int pendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    public int flush() throws Exception {
+        synchronized (flushLock) {
+            List<OutboxEntry> batch;
+            synchronized (lock) {
+                batch = new ArrayList<>(pending);
+            }
+            if (batch.isEmpty()) return 0;
+            outbox.sync();
+            List<OutboxEntry> rejected = readingRepo.applyOutbox(outbox.getName(), batch);
+            long lastSeq = batch.get(batch.size() - 1).getSeq();
+            synchronized (lock) {
+                pending.subList(0, batch.size()).clear();
+                activeLoans.values().removeIf(loan -> loan.seq <= lastSeq);
+                pendingReturns.values().removeIf(seq -> seq <= lastSeq);
+                latestByBook.values().removeIf(entry -> entry.getSeq() <= lastSeq);
+                outbox.rewrite(pending);
+            }
+            for (OutboxEntry entry : rejected) {
+                readingRepo.announceStatus(entry.getBookId(), BookStatus.ISSUED);
+                System.err.println("Dropped write-behind borrow of " + entry.getBookName() + " by " + entry.getUsername()
+                        + ": the book was issued concurrently");
+            }
+            return batch.size() - rejected.size();
+        }
+    }
+
+    public void start(long period, TimeUnit unit) {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "circulation-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, period, period, unit);
+    }
+
+    public void stop() throws Exception {
+        if (scheduler != null) scheduler.shutdown();
+        scheduler = null;
+        flush();
+        outbox.close();
+    }
+
+    public void stopOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                stop();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, "write-behind-shutdown"));
+    }
+
+    private static BookStatus statusAfter(OutboxEntry entry) {
+        return entry.getType() == OutboxEntry.Type.BORROW ? BookStatus.ISSUED : BookStatus.AVAILABLE;
+    }
+
+    private static String keyOf(String username, int bookId) {
+        return username + '\u0000' + bookId;
+    }
+
+    private static class Loan {
+        private final long seq;
+        private final Reading reading;
+
+        Loan(long seq, Reading reading) {
+            this.seq = seq;
+            this.reading = reading;
+        }
+    }
+}
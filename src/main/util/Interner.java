@@ -0,0 +1,59 @@
+package main.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class Interner<V> {
+    private final ConcurrentMap<Integer, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<V> collected = new ReferenceQueue<>();
+
+    public V get(int id) {
+        expunge();
+        Entry<V> entry = entries.get(id);
+        return entry == null ? null : entry.get();
+    }
+
+    public V intern(int id, V value) {
+        expunge();
+        while (true) {
+            Entry<V> entry = entries.get(id);
+            V existing = entry == null ? null : entry.get();
+            if (existing != null && existing.equals(value)) return existing;
+            Entry<V> replacement = new Entry<>(id, value, collected);
+            boolean stored = entry == null ? entries.putIfAbsent(id, replacement) == null : entries.replace(id, entry, replacement);
+            if (stored) return value;
+        }
+    }
+
+    public void evict(int id) {
+        entries.remove(id);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        expunge();
+        return entries.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        Entry<V> entry;
+        while ((entry = (Entry<V>) collected.poll()) != null) {
+            entries.remove(entry.id, entry);
+        }
+    }
+
+    private static class Entry<V> extends WeakReference<V> {
+        private final int id;
+
+        Entry(int id, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package main.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class SpaceSaving<K> {
+    private static final Comparator<Counter<?>> BY_COUNT = Comparator.<Counter<?>>comparingLong(c -> c.count).thenComparingLong(c -> c.seq);
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeSet<Counter<?>> ordered = new TreeSet<>(BY_COUNT);
+    private long nextSeq;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public synchronized void offer(K key, long increment) {
+        Counter<K> counter = counters.get(key);
+        if (counter == null && counters.size() < capacity) {
+            counter = new Counter<>(key, 0, 0);
+            counters.put(key, counter);
+        } else if (counter == null) {
+            @SuppressWarnings("unchecked")
+            Counter<K> evicted = (Counter<K>) ordered.pollFirst();
+            counters.remove(evicted.key);
+            counter = new Counter<>(key, evicted.count, evicted.count);
+            counters.put(key, counter);
+        } else {
+            ordered.remove(counter);
+        }
+        counter.count += increment;
+        counter.seq = nextSeq++;
+        ordered.add(counter);
+    }
+
+    public synchronized List<Counter<K>> top(int n) {
+        List<Counter<K>> top = new ArrayList<>(Math.min(n, counters.size()));
+        for (Counter<?> counter : ordered.descendingSet()) {
+            if (top.size() == n) break;
+            @SuppressWarnings("unchecked")
+            Counter<K> typed = (Counter<K>) counter;
+            top.add(new Counter<>(typed.key, typed.count, typed.error));
+        }
+        return top;
+    }
+
+    public static class Counter<K> {
+        private final K key;
+        private long count;
+        private final long error;
+        private long seq;
+
+        Counter(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package main.workload;
+
+import main.model.BookStatus;
+import main.model.Permission;
+import main.repository.BaseDataSource;
+import main.util.ZipfDistribution;
+
+import java.sql.*;
+import java.util.*;
+
+public class DataSeeder {
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] FIRST_NAMES = {"Martin", "Kent", "Grace", "Barbara", "Donald", "Edsger", "Frances", "Niklaus",
+            "Margaret", "Alan", "Ada", "Ward", "Rebecca", "Eric", "Joshua", "Brian", "Dennis", "Leslie", "Radia", "Tony"};
+    private static final String[] LAST_NAMES = {"Fowler", "Beck", "Hopper", "Liskov", "Knuth", "Dijkstra", "Allen", "Wirth",
+            "Hamilton", "Kay", "Lovelace", "Cunningham", "Parsons", "Evans", "Bloch", "Kernighan", "Ritchie", "Lamport", "Perlman", "Hoare"};
+    private static final String[] TITLE_WORDS = {"Patterns", "Refactoring", "Enterprise", "Architecture", "Distributed", "Systems",
+            "Clean", "Code", "Domain", "Driven", "Design", "Concurrency", "Practice", "Effective", "Java", "Algorithms", "Data",
+            "Structures", "Compilers", "Networks", "Secure", "Reliable", "Scalable", "Functional", "Programming", "Legacy",
+            "Testing", "Delivery", "Continuous", "Pragmatic", "Art", "Craft", "Principles", "Modern", "Operating", "Database"};
+    private static final String[] PUBLISHER_WORDS = {"Addison-Wesly", "O'Reilly", "Manning", "Pearson", "Springer", "Packt",
+            "Apress", "Wiley", "MIT Press", "Prentice Hall", "No Starch", "Pragmatic Bookshelf"};
+
+    private final Connection connection;
+    private final Random random;
+
+    public DataSeeder(BaseDataSource dataSource, long randomSeed) throws SQLException, ClassNotFoundException {
+        connection = dataSource.getConnection();
+        random = new Random(randomSeed);
+    }
+
+    public Seed seed(int users, int authors, int publishers, int books, double skew, String password) throws SQLException {
+        String tag = Long.toString(System.currentTimeMillis(), 36);
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            int memberRole = insertRole(Permission.BORROW_BOOK, Permission.RETURN_BOOK, Permission.RENEW_BOOK,
+                    Permission.SEARCH_BY_BOOKNAME, Permission.SEARCH_BY_AUTHOR);
+            int librarianRole = insertRole(Permission.values());
+            List<String> usernames = insertUsers(tag, users, password, memberRole, librarianRole);
+            int[] authorIds = insertNames("author", authorNames(tag, authors));
+            int[] publisherIds = insertNames("publisher", publisherNames(tag, publishers));
+            List<String> titles = titles(tag, books);
+            int[] bookIds = insertBooks(titles, new ZipfDistribution(authorIds.length, skew), authorIds,
+                    new ZipfDistribution(publisherIds.length, skew), publisherIds);
+            return new Seed(usernames, password, bookIds, titles);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private int insertRole(Permission... permissions) throws SQLException {
+        Integer[] values = new Integer[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            values[i] = permissions[i].getValue();
+        }
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into role(permissions) values(?)", new String[]{"id"});
+        preparedStatement.setArray(1, connection.createArrayOf("int", values));
+        preparedStatement.executeUpdate();
+        ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+        generatedKeys.next();
+        connection.commit();
+        return generatedKeys.getInt(1);
+    }
+
+    private List<String> insertUsers(String tag, int users, String password, int memberRole, int librarianRole) throws SQLException {
+        List<String> usernames = new ArrayList<>(users);
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into \"user\"(username,password,role) values(?,?,?)");
+        for (int i = 0; i < users; i++) {
+            String username = "load-" + tag + "-" + i;
+            usernames.add(username);
+            preparedStatement.setString(1, username);
+            preparedStatement.setString(2, password);
+            preparedStatement.setInt(3, i % 50 == 0 ? librarianRole : memberRole);
+            preparedStatement.addBatch();
+            if ((i + 1) % BATCH_SIZE == 0) flush(preparedStatement);
+        }
+        flush(preparedStatement);
+        return usernames;
+    }
+
+    private int[] insertNames(String table, List<String> names) throws SQLException {
+        int[] ids = new int[names.size()];
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into " + table + "(name) values(?)", new String[]{"id"});
+        int next = 0;
+        for (int i = 0; i < names.size(); i++) {
+            preparedStatement.setString(1, names.get(i));
+            preparedStatement.addBatch();
+            if ((i + 1) % BATCH_SIZE == 0 || i == names.size() - 1) next = flushReturningIds(preparedStatement, ids, next);
+        }
+        return ids;
+    }
+
+    private int[] insertBooks(List<String> titles, ZipfDistribution authorPopularity, int[] authorIds,
+                              ZipfDistribution publisherPopularity, int[] publisherIds) throws SQLException {
+        int[] ids = new int[titles.size()];
+        PreparedStatement preparedStatement = connection.prepareStatement(
+                "insert into book(name,author_ids,publisher_id,status) values(?,?,?,?)", new String[]{"id"});
+        int next = 0;
+        for (int i = 0; i < titles.size(); i++) {
+            Set<Integer> bookAuthors = new LinkedHashSet<>();
+            int authorCount = authorCount();
+            while (bookAuthors.size() < Math.min(authorCount, authorIds.length)) {
+                bookAuthors.add(authorIds[authorPopularity.sample(random)]);
+            }
+            preparedStatement.setString(1, titles.get(i));
+            preparedStatement.setArray(2, connection.createArrayOf("int", bookAuthors.toArray()));
+            preparedStatement.setInt(3, publisherIds[publisherPopularity.sample(random)]);
+            preparedStatement.setString(4, BookStatus.AVAILABLE.toString());
+            preparedStatement.addBatch();
+            if ((i + 1) % BATCH_SIZE == 0 || i == titles.size() - 1) next = flushReturningIds(preparedStatement, ids, next);
+        }
+        return ids;
+    }
+
+    private int authorCount() {
+        int roll = random.nextInt(100);
+        if (roll < 70) return 1;
+        if (roll < 90) return 2;
+        return 3 + random.nextInt(2);
+    }
+
+    private List<String> authorNames(String tag, int authors) {
+        List<String> names = new ArrayList<>(authors);
+        for (int i = 0; i < authors; i++) {
+            names.add(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + " " + tag + i);
+        }
+        return names;
+    }
+
+    private List<String> publisherNames(String tag, int publishers) {
+        List<String> names = new ArrayList<>(publishers);
+        for (int i = 0; i < publishers; i++) {
+            names.add(PUBLISHER_WORDS[i % PUBLISHER_WORDS.length] + " " + tag + i);
+        }
+        return names;
+    }
+
+    private List<String> titles(String tag, int books) {
+        List<String> titles = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            StringBuilder title = new StringBuilder();
+            int words = 2 + random.nextInt(3);
+            for (int w = 0; w < words; w++) {
+                title.append(TITLE_WORDS[random.nextInt(TITLE_WORDS.length)]).append(' ');
+            }
+            titles.add(title.append(tag).append(i).toString());
+        }
+        return titles;
+    }
+
+    private void flush(PreparedStatement preparedStatement) throws SQLException {
+        preparedStatement.executeBatch();
+        connection.commit();
+    }
+
+    private int flushReturningIds(PreparedStatement preparedStatement, int[] ids, int next) throws SQLException {
+        preparedStatement.executeBatch();
+        ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+        while (generatedKeys.next()) {
+            ids[next++] = generatedKeys.getInt(1);
+        }
+        connection.commit();
+        return next;
+    }
+}
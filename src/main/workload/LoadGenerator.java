@@ -0,0 +1,131 @@
+package main.workload;
+
+import main.repository.BaseDataSource;
+import main.repository.DataSourceBuilder;
+import main.service.ServiceManager;
+import main.util.ZipfDistribution;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+public class LoadGenerator {
+    private final Seed seed;
+    private final ZipfDistribution popularity;
+    private final Random random;
+
+    public LoadGenerator(Seed seed, double skew, long randomSeed) {
+        this.seed = seed;
+        this.popularity = new ZipfDistribution(seed.getBookCount(), skew);
+        this.random = new Random(randomSeed);
+    }
+
+    public List<TraceRecord> generate(int operations, int searchWeight, int borrowWeight, int returnWeight) {
+        int totalWeight = searchWeight + borrowWeight + returnWeight;
+        List<TraceRecord> records = new ArrayList<>(operations);
+        Map<String, List<Integer>> loans = new HashMap<>();
+        List<String> borrowers = new ArrayList<>();
+        Set<Integer> issued = new HashSet<>();
+        List<String> usernames = seed.getUsernames();
+        while (records.size() < operations) {
+            int roll = random.nextInt(totalWeight);
+            if (roll < searchWeight) {
+                String username = usernames.get(random.nextInt(usernames.size()));
+                records.add(record(TraceRecord.Operation.SEARCH, username, query(seed.getTitle(popularity.sample(random)))));
+            } else if ((roll < searchWeight + borrowWeight || borrowers.isEmpty()) && issued.size() < seed.getBookCount()) {
+                int rank = popularity.sample(random);
+                if (!issued.add(rank)) continue;
+                String username = usernames.get(random.nextInt(usernames.size()));
+                List<Integer> userLoans = loans.computeIfAbsent(username, u -> new ArrayList<>());
+                if (userLoans.isEmpty()) borrowers.add(username);
+                userLoans.add(rank);
+                records.add(bookRecord(TraceRecord.Operation.BORROW, username, rank));
+            } else {
+                int index = random.nextInt(borrowers.size());
+                String username = borrowers.get(index);
+                List<Integer> userLoans = loans.get(username);
+                int rank = userLoans.remove(random.nextInt(userLoans.size()));
+                if (userLoans.isEmpty()) {
+                    borrowers.set(index, borrowers.get(borrowers.size() - 1));
+                    borrowers.remove(borrowers.size() - 1);
+                }
+                issued.remove(rank);
+                records.add(bookRecord(TraceRecord.Operation.RETURN, username, rank));
+            }
+        }
+        for (Map.Entry<String, List<Integer>> userLoans : loans.entrySet()) {
+            for (int rank : userLoans.getValue()) {
+                records.add(bookRecord(TraceRecord.Operation.RETURN, userLoans.getKey(), rank));
+            }
+        }
+        return records;
+    }
+
+    public Map<Integer, ReplayReport> scale(Callable<ServiceManager> backend, List<TraceRecord> workload, int[] threadCounts) throws Exception {
+        Map<Integer, ReplayReport> reports = new LinkedHashMap<>();
+        WorkloadReplayer replayer = new WorkloadReplayer(backend, seed.getPassword());
+        for (int threads : threadCounts) {
+            reports.put(threads, replayer.replay(workload, 0, threads));
+        }
+        return reports;
+    }
+
+    public static String scalingReport(Map<Integer, ReplayReport> reports) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%7s %10s %9s %12s %12s %12s %12s %8s%n", "threads", "ops/s", "speedup",
+                "search p50", "search p99", "borrow p50", "borrow p99", "errors"));
+        double baseline = 0;
+        for (Map.Entry<Integer, ReplayReport> entry : reports.entrySet()) {
+            ReplayReport replay = entry.getValue();
+            if (baseline == 0) baseline = replay.throughput();
+            report.append(String.format("%7d %10.1f %8.2fx %12d %12d %12d %12d %8d%n", entry.getKey(), replay.throughput(),
+                    baseline == 0 ? 0 : replay.throughput() / baseline,
+                    replay.percentile(TraceRecord.Operation.SEARCH, 50), replay.percentile(TraceRecord.Operation.SEARCH, 99),
+                    replay.percentile(TraceRecord.Operation.BORROW, 50), replay.percentile(TraceRecord.Operation.BORROW, 99),
+                    replay.totalErrors()));
+        }
+        return report.toString();
+    }
+
+    private String query(String title) {
+        if (random.nextInt(10) > 0 || title.length() < 8) return title;
+        int typo = 1 + random.nextInt(title.length() - 2);
+        return title.substring(0, typo) + title.substring(typo + 1);
+    }
+
+    private TraceRecord record(TraceRecord.Operation operation, String... args) {
+        return new TraceRecord(operation, 0, 0, true, args);
+    }
+
+    private TraceRecord bookRecord(TraceRecord.Operation operation, String username, int rank) {
+        return record(operation, username, String.valueOf(seed.getBookId(rank)), seed.getTitle(rank));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("usage: LoadGenerator <jdbc-url> [users] [books] [operations] [threads, e.g. 1,2,4,8] [search:borrow:return]");
+            return;
+        }
+        String url = args[0];
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int books = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+        int operations = args.length > 3 ? Integer.parseInt(args[3]) : 20000;
+        String[] threads = (args.length > 4 ? args[4] : "1,2,4,8,16").split(",");
+        String[] mix = (args.length > 5 ? args[5] : "70:20:10").split(":");
+        if (mix.length != 3) throw new Exception("Mix should be search:borrow:return, e.g. 70:20:10");
+        double skew = Double.parseDouble(System.getProperty("library.zipfSkew", "1.0"));
+
+        BaseDataSource dataSource = DataSourceBuilder.build("org.postgresql.Driver", url, "postgres", "1");
+        Seed seed = new DataSeeder(dataSource, 42).seed(users, Math.max(1, books / 5), Math.max(1, books / 500), books, skew, "load");
+        System.out.println("Seeded " + users + " users and " + books + " books");
+
+        LoadGenerator generator = new LoadGenerator(seed, skew, 42);
+        List<TraceRecord> workload = generator.generate(operations, Integer.parseInt(mix[0]), Integer.parseInt(mix[1]), Integer.parseInt(mix[2]));
+        int[] threadCounts = new int[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            threadCounts[i] = Integer.parseInt(threads[i].trim());
+        }
+        Map<Integer, ReplayReport> reports = generator.scale(() -> new ServiceManager(DataSourceBuilder.build("org.postgresql.Driver", url, "postgres", "1"),
+                Boolean.getBoolean("library.inMemoryCatalog")), workload, threadCounts);
+        System.out.print(scalingReport(reports));
+    }
+}
@@ -0,0 +1,121 @@
+package main.workload;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReplayReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<TraceRecord.Operation, Latencies> replayed = new EnumMap<>(TraceRecord.Operation.class);
+    private final Map<TraceRecord.Operation, Latencies> recorded = new EnumMap<>(TraceRecord.Operation.class);
+    private final Map<TraceRecord.Operation, LongAdder> errors = new EnumMap<>(TraceRecord.Operation.class);
+    private long elapsedNanos;
+
+    public ReplayReport() {
+        for (TraceRecord.Operation operation : TraceRecord.Operation.values()) {
+            replayed.put(operation, new Latencies());
+            recorded.put(operation, new Latencies());
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    void recorded(TraceRecord record) {
+        recorded.get(record.getOperation()).add(record.getDurationMicros());
+    }
+
+    void replayed(TraceRecord.Operation operation, long latencyMicros) {
+        replayed.get(operation).add(latencyMicros);
+    }
+
+    void failed(TraceRecord.Operation operation) {
+        errors.get(operation).increment();
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long count(TraceRecord.Operation operation) {
+        return replayed.get(operation).size();
+    }
+
+    public long errors(TraceRecord.Operation operation) {
+        return errors.get(operation).sum();
+    }
+
+    public long totalErrors() {
+        long total = 0;
+        for (LongAdder adder : errors.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long totalCount() {
+        long total = 0;
+        for (Latencies latencies : replayed.values()) {
+            total += latencies.size();
+        }
+        return total;
+    }
+
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : totalCount() * 1e9 / elapsedNanos;
+    }
+
+    public long percentile(TraceRecord.Operation operation, double percentile) {
+        return replayed.get(operation).percentile(percentile);
+    }
+
+    public long recordedPercentile(TraceRecord.Operation operation, double percentile) {
+        return recorded.get(operation).percentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d operations in %.2fs, %.1f ops/s%n", totalCount(), elapsedNanos / 1e9, throughput()));
+        report.append(String.format("%-13s %8s %7s", "operation", "count", "errors"));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(" %16s", "p" + percentile + " us"));
+        }
+        report.append(String.format("%n"));
+        for (TraceRecord.Operation operation : TraceRecord.Operation.values()) {
+            if (count(operation) == 0) continue;
+            report.append(String.format("%-13s %8d %7d", operation, count(operation), errors(operation)));
+            for (double percentile : PERCENTILES) {
+                report.append(String.format(" %16s", percentile(operation, percentile) + " (" + recordedPercentile(operation, percentile) + ")"));
+            }
+            report.append(String.format("%n"));
+        }
+        return report.toString();
+    }
+
+    private static class Latencies {
+        private long[] values = new long[64];
+        private int size;
+        private boolean sorted;
+
+        synchronized void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+            sorted = false;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long percentile(double percentile) {
+            if (size == 0) return 0;
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, rank))];
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package main.workload;
+
+import java.util.List;
+
+public class Seed {
+    private final List<String> usernames;
+    private final String password;
+    private final int[] bookIds;
+    private final List<String> titles;
+
+    public Seed(List<String> usernames, String password, int[] bookIds, List<String> titles) {
+        this.usernames = usernames;
+        this.password = password;
+        this.bookIds = bookIds;
+        this.titles = titles;
+    }
+
+    public List<String> getUsernames() {
+        return usernames;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getBookCount() {
+        return bookIds.length;
+    }
+
+    public int getBookId(int rank) {
+        return bookIds[rank];
+    }
+
+    public String getTitle(int rank) {
+        return titles.get(rank);
+    }
+}
@@ -0,0 +1,108 @@
+package main.workload;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class TraceRecord {
+    public enum Operation {
+        AUTHENTICATE,
+        SEARCH,
+        BORROW,
+        RETURN,
+        ADD,
+        REMOVE
+    }
+
+    private final Operation operation;
+    private final long offsetMicros;
+    private final long durationMicros;
+    private final boolean successful;
+    private final String[] args;
+
+    public TraceRecord(Operation operation, long offsetMicros, long durationMicros, boolean successful, String... args) {
+        this.operation = operation;
+        this.offsetMicros = offsetMicros;
+        this.durationMicros = durationMicros;
+        this.successful = successful;
+        this.args = args;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public String getArg(int index) {
+        return index < args.length ? args[index] : null;
+    }
+
+    public int getArgCount() {
+        return args.length;
+    }
+
+    public String getUsername() {
+        return getArg(0);
+    }
+
+    void write(DataOutput out, long previousOffsetMicros) throws IOException {
+        out.writeByte(operation.ordinal() << 1 | (successful ? 1 : 0));
+        writeVarLong(out, offsetMicros - previousOffsetMicros);
+        writeVarLong(out, durationMicros);
+        writeVarLong(out, args.length);
+        for (String arg : args) {
+            out.writeUTF(arg == null ? "" : arg);
+        }
+    }
+
+    static TraceRecord read(DataInput in, long previousOffsetMicros) throws IOException {
+        int header = in.readUnsignedByte();
+        long offsetMicros = previousOffsetMicros + readVarLong(in);
+        long durationMicros = readVarLong(in);
+        String[] args = new String[(int) readVarLong(in)];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        return new TraceRecord(Operation.values()[header >>> 1], offsetMicros, durationMicros, (header & 1) == 1, args);
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TraceRecord{" +
+                "operation=" + operation +
+                ", offsetMicros=" + offsetMicros +
+                ", durationMicros=" + durationMicros +
+                ", successful=" + successful +
+                ", args=" + Arrays.toString(args) +
+                '}';
+    }
+}
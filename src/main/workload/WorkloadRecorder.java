@@ -0,0 +1,65 @@
+package main.workload;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class WorkloadRecorder implements Closeable {
+    private static final int MAGIC = 0x4C4D5452;
+    private static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final long startNanos = System.nanoTime();
+    private long previousOffsetMicros;
+
+    public WorkloadRecorder(Path file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    public <T> T record(TraceRecord.Operation operation, Callable<T> call, String... args) throws Exception {
+        long started = System.nanoTime();
+        boolean successful = false;
+        try {
+            T result = call.call();
+            successful = !Boolean.FALSE.equals(result);
+            return result;
+        } finally {
+            append(new TraceRecord(operation, (started - startNanos) / 1000, (System.nanoTime() - started) / 1000, successful, args));
+        }
+    }
+
+    public synchronized void append(TraceRecord record) throws IOException {
+        record.write(out, previousOffsetMicros);
+        previousOffsetMicros = record.getOffsetMicros();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    public static List<TraceRecord> read(Path file) throws IOException {
+        List<TraceRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a workload trace: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported workload trace version " + version);
+            long previousOffsetMicros = 0;
+            while (true) {
+                TraceRecord record;
+                try {
+                    record = TraceRecord.read(in, previousOffsetMicros);
+                } catch (EOFException e) {
+                    return records;
+                }
+                records.add(record);
+                previousOffsetMicros = record.getOffsetMicros();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package main.workload;
+
+import main.model.Book;
+import main.model.User;
+import main.repository.DataSourceBuilder;
+import main.service.ServiceManager;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class WorkloadReplayer {
+    private final Callable<ServiceManager> backend;
+    private final String password;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    public WorkloadReplayer(Callable<ServiceManager> backend, String password) {
+        this.backend = backend;
+        this.password = password;
+    }
+
+    public ReplayReport replay(List<TraceRecord> records, double speed, int concurrency) throws Exception {
+        if (concurrency < 1) throw new Exception("Concurrency should be at least 1");
+        ReplayReport report = new ReplayReport();
+        ExecutorService[] workers = new ExecutorService[concurrency];
+        ServiceManager[] serviceManagers = new ServiceManager[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            serviceManagers[i] = backend.call();
+            int index = i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replay-worker-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        long startNanos = System.nanoTime();
+        for (TraceRecord record : records) {
+            report.recorded(record);
+            long scheduledNanos = System.nanoTime();
+            if (speed > 0) {
+                scheduledNanos = startNanos + (long) (record.getOffsetMicros() * 1000 / speed);
+                long wait = scheduledNanos - System.nanoTime();
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            long scheduled = scheduledNanos;
+            int worker = Math.floorMod(Objects.hashCode(routingKey(record)), concurrency);
+            workers[worker].execute(() -> execute(serviceManagers[worker], record, scheduled, report));
+        }
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        report.finish(System.nanoTime() - startNanos);
+        return report;
+    }
+
+    public static String routingKey(TraceRecord record) {
+        switch (record.getOperation()) {
+            case BORROW:
+            case RETURN:
+            case REMOVE:
+                return record.getArg(1);
+            default:
+                return record.getUsername();
+        }
+    }
+
+    private void execute(ServiceManager serviceManager, TraceRecord record, long scheduledNanos, ReplayReport report) {
+        try {
+            if (!perform(serviceManager, record)) report.failed(record.getOperation());
+        } catch (Exception e) {
+            report.failed(record.getOperation());
+        }
+        report.replayed(record.getOperation(), (System.nanoTime() - scheduledNanos) / 1000);
+    }
+
+    private boolean perform(ServiceManager serviceManager, TraceRecord record) throws Exception {
+        switch (record.getOperation()) {
+            case AUTHENTICATE:
+                users.put(record.getUsername(), serviceManager.getAuthenticationService().authenticate(record.getUsername(), password));
+                return true;
+            case SEARCH:
+                List<Book> books = serviceManager.getBookSearchService().searchBookByName(record.getArg(1));
+                if (books.isEmpty()) serviceManager.getBookSearchService().searchBookByNameFuzzy(record.getArg(1), 10);
+                return true;
+            case BORROW:
+                return serviceManager.getReadingService().borrowBook(user(serviceManager, record), book(serviceManager, record));
+            case RETURN:
+                return serviceManager.getReadingService().returnBook(user(serviceManager, record), book(serviceManager, record));
+            case ADD:
+                serviceManager.getAdministrativeService().addBook(user(serviceManager, record), record.getArg(1),
+                        Arrays.asList(record.getArg(3).split("\n")), record.getArg(2));
+                return true;
+            case REMOVE:
+                return serviceManager.getAdministrativeService().removeBook(user(serviceManager, record), book(serviceManager, record));
+            default:
+                return false;
+        }
+    }
+
+    private User user(ServiceManager serviceManager, TraceRecord record) throws Exception {
+        User user = users.get(record.getUsername());
+        if (user != null) return user;
+        user = serviceManager.getAuthenticationService().authenticate(record.getUsername(), password);
+        users.put(record.getUsername(), user);
+        return user;
+    }
+
+    private Book book(ServiceManager serviceManager, TraceRecord record) throws Exception {
+        List<Book> books = serviceManager.getBookSearchService().searchBookByName(record.getArg(2));
+        for (Book book : books) {
+            if (String.valueOf(book.getId()).equals(record.getArg(1))) return book;
+        }
+        if (books.isEmpty()) throw new Exception("Book not found: " + record.getArg(2));
+        return books.get(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: WorkloadReplayer <trace> <jdbc-url> [speed, 0 = as fast as possible] [concurrency]");
+            return;
+        }
+        List<TraceRecord> records = WorkloadRecorder.read(Paths.get(args[0]));
+        WorkloadReplayer replayer = new WorkloadReplayer(() -> new ServiceManager(DataSourceBuilder.build("org.postgresql.Driver", args[1], "postgres", "1"),
+                Boolean.getBoolean("library.inMemoryCatalog")), System.getProperty("library.replayPassword", "password"));
+        ReplayReport report = replayer.replay(records, args.length > 2 ? Double.parseDouble(args[2]) : 1,
+                args.length > 3 ? Integer.parseInt(args[3]) : 8);
+        System.out.print(report);
+    }
+}
@@ -0,0 +1,137 @@
+package test;
+
+import main.BatchSession;
+import main.model.*;
+import main.service.AuthenticationService;
+import main.service.BookSearchService;
+import main.service.ReadingService;
+import main.service.ServiceManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+public class BatchSessionTest {
+    @Mock
+    private AuthenticationService authenticationService;
+    @Mock
+    private BookSearchService bookSearchService;
+    @Mock
+    private ServiceManager serviceManager;
+    @Mock
+    private ReadingService readingService;
+
+    private User user;
+    private Book refactoring;
+    private Book peaa;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        user = new User("rajbharath", new ArrayList<Permission>());
+        refactoring = book(1, "Refactoring");
+        peaa = book(2, "P EAA");
+        when(authenticationService.authenticate("rajbharath", "secret")).thenReturn(user);
+        when(bookSearchService.searchBookByName("Refactoring")).thenReturn(Arrays.asList(refactoring));
+        when(bookSearchService.searchBookByName("P EAA")).thenReturn(Arrays.asList(peaa));
+        when(serviceManager.getReadingService()).thenReturn(readingService);
+        when(serviceManager.localUser(user)).thenReturn(user);
+        when(readingService.borrowBooks(any(User.class), anyListOf(Book.class))).thenAnswer(invocation -> {
+            List<ReadingOutcome> outcomes = new ArrayList<>();
+            for (Book book : books(invocation)) {
+                outcomes.add(ReadingOutcome.success(new Reading(user, book, new java.util.Date())));
+            }
+            return outcomes;
+        });
+    }
+
+    @Test
+    public void shouldPipelineConsecutiveBorrows() throws Exception {
+        String script = "# nightly circulation\n" +
+                "login|rajbharath|secret\n" +
+                "borrow|Refactoring\n" +
+                "borrow|P EAA\n" +
+                "search|Refactoring\n";
+        StringWriter out = new StringWriter();
+        BatchSession session = new BatchSession(authenticationService, bookSearchService, branch -> serviceManager, out);
+        session.run(new BufferedReader(new StringReader(script)));
+
+        verify(readingService, times(1)).borrowBooks(user, Arrays.asList(refactoring, peaa));
+        assertEquals(4, session.getSucceeded());
+        assertEquals(0, session.getFailed());
+        assertTrue(out.toString().contains("ok|borrow|P EAA\n"));
+        assertTrue(out.toString().endsWith("done|4 succeeded|0 failed\n"));
+    }
+
+    @Test
+    public void shouldReportFailuresAndContinue() throws Exception {
+        String script = "borrow|Refactoring\n" +
+                "unknown|x\n" +
+                "login|rajbharath|secret\n" +
+                "borrow|Refactoring\n";
+        StringWriter out = new StringWriter();
+        BatchSession session = new BatchSession(authenticationService, bookSearchService, branch -> serviceManager, out);
+        session.run(new BufferedReader(new StringReader(script)));
+
+        assertEquals(2, session.getFailed());
+        assertEquals(2, session.getSucceeded());
+        assertTrue(out.toString().contains("Please login to do this operation"));
+    }
+
+    @Test
+    public void shouldRejectBorrowWithoutAnExactTitleMatch() throws Exception {
+        when(bookSearchService.searchBookByName("Refactor")).thenReturn(Arrays.asList(refactoring));
+        StringWriter out = new StringWriter();
+        BatchSession session = new BatchSession(authenticationService, bookSearchService, branch -> serviceManager, out);
+        session.run(new BufferedReader(new StringReader("login|rajbharath|secret\nborrow|Refactor\n")));
+
+        verify(readingService, never()).borrowBooks(any(User.class), anyListOf(Book.class));
+        assertEquals(1, session.getFailed());
+        assertTrue(out.toString().contains("error|borrow|borrow|Refactor (line 2)|No book named Refactor\n"));
+    }
+
+    @Test
+    public void shouldReturnTheCopyTheUserHasBorrowed() throws Exception {
+        Book shelved = book(3, "Refactoring");
+        Book borrowed = book(4, "Refactoring");
+        borrowed.issue();
+        when(bookSearchService.searchBookByName("refactoring")).thenReturn(Arrays.asList(shelved, borrowed));
+        Map<Integer, Reading> active = new HashMap<>();
+        active.put(4, new Reading(user, borrowed, new java.util.Date()));
+        when(readingService.findActiveReadings(user, Arrays.asList(shelved, borrowed))).thenReturn(active);
+        when(readingService.returnBooks(any(User.class), anyListOf(Book.class))).thenReturn(new ArrayList<ReadingOutcome>());
+        StringWriter out = new StringWriter();
+        BatchSession session = new BatchSession(authenticationService, bookSearchService, branch -> serviceManager, out);
+        session.run(new BufferedReader(new StringReader("login|rajbharath|secret\nreturn|refactoring\nreturn|refactoring\n")));
+
+        verify(readingService).returnBooks(user, Arrays.asList(borrowed));
+        assertTrue(out.toString().contains("User currently has no reading on refactoring"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Book> books(InvocationOnMock invocation) {
+        return (List<Book>) invocation.getArguments()[1];
+    }
+
+    private Book book(int id, String name) throws Exception {
+        Book book = new Book(name, Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(id);
+        return book;
+    }
+}
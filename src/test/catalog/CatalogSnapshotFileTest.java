@@ -0,0 +1,65 @@
+package test.catalog;
+
+import main.catalog.CatalogSnapshotFile;
+import main.catalog.ColumnarCatalog;
+import main.model.Author;
+import main.model.Book;
+import main.model.BookStatus;
+import main.model.Publisher;
+import main.repository.AuthorRepo;
+import main.repository.BaseDataSource;
+import main.repository.PublisherRepo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CatalogSnapshotFileTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = Files.createTempFile("catalog", ".snapshot");
+    }
+
+    @Test
+    public void shouldRestoreCatalogFromSnapshot() throws Exception {
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        catalog.putAuthor(1, new Author("Martin Fowler"));
+        catalog.putAuthor(2, new Author("Kent Beck"));
+        catalog.putPublisher(3, new Publisher("Addison-Wesly"));
+        catalog.put(10, "Refactoring", new Integer[]{1, 2}, 3, BookStatus.ISSUED, 4);
+        catalog.put(11, "P EAA", new Integer[]{1}, 3, BookStatus.AVAILABLE, 0);
+        CatalogSnapshotFile.write(catalog, 42, file);
+
+        ColumnarCatalog restored = new ColumnarCatalog();
+        long seq = CatalogSnapshotFile.load(file, restored, new AuthorRepo(baseDataSource), new PublisherRepo(baseDataSource));
+
+        assertEquals(42, seq);
+        assertEquals(2, restored.size());
+        Book book = restored.findById(10);
+        assertEquals("Refactoring", book.getName());
+        assertEquals("Kent Beck", book.getAuthors().get(1).getName());
+        assertEquals("Addison-Wesly", book.getPublisher().getName());
+        assertFalse(book.isAvailable());
+        assertEquals(4, book.getVersion());
+        restored.put(12, "TDD", new Integer[]{2}, 3, BookStatus.AVAILABLE, 0);
+        assertEquals(3, restored.findBooksByName("").size());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+}
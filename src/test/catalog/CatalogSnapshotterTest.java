@@ -0,0 +1,96 @@
+package test.catalog;
+
+import main.catalog.CatalogSnapshotFile;
+import main.catalog.CatalogSnapshotter;
+import main.catalog.ColumnarCatalog;
+import main.model.Author;
+import main.model.BookStatus;
+import main.model.Publisher;
+import main.repository.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class CatalogSnapshotterTest {
+    @Mock
+    private BookRepo bookRepo;
+    @Mock
+    private AuthorRepo authorRepo;
+    @Mock
+    private PublisherRepo publisherRepo;
+    @Mock
+    private BookChangeLogRepo changeLogRepo;
+
+    private Path file;
+    private CatalogSnapshotter snapshotter;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = Files.createTempFile("catalog", ".snapshot");
+        ColumnarCatalog catalog = new ColumnarCatalog();
+        catalog.putAuthor(1, new Author("Martin Fowler"));
+        catalog.putPublisher(3, new Publisher("Addison-Wesly"));
+        catalog.put(10, "Refactoring", new Integer[]{1}, 3, BookStatus.AVAILABLE, 0);
+        CatalogSnapshotFile.write(catalog, 5, file);
+        snapshotter = new CatalogSnapshotter(bookRepo, authorRepo, publisherRepo, changeLogRepo, file);
+        when(authorRepo.findAll()).thenReturn(new HashMap<>());
+        when(publisherRepo.findAll()).thenReturn(new HashMap<>());
+        when(authorRepo.canonical(anyInt(), anyString())).thenAnswer(invocation -> new Author((String) invocation.getArguments()[1]));
+        when(publisherRepo.canonical(anyInt(), anyString())).thenAnswer(invocation -> new Publisher((String) invocation.getArguments()[1]));
+    }
+
+    @Test
+    public void shouldReplayFromTheSnapshotWatermarkAndStampTheAppliedOne() throws Exception {
+        when(changeLogRepo.currentWatermark()).thenReturn(9L, 12L);
+        when(changeLogRepo.findSince(5)).thenReturn(Collections.singletonList(new BookChange(40, 10, false)));
+        when(changeLogRepo.findSince(9)).thenReturn(Collections.<BookChange>emptyList());
+        doAnswer(invocation -> {
+            ((BookRowHandler) invocation.getArguments()[1]).handle(10, "Refactoring", new Integer[]{1}, 3, BookStatus.ISSUED, 0);
+            return true;
+        }).when(bookRepo).findRowById(eq(10), any(BookRowHandler.class));
+
+        ColumnarCatalog catalog = snapshotter.loadOrBuild();
+
+        assertEquals(BookStatus.ISSUED, catalog.findById(10).getBookStatus());
+        assertEquals(9, catalog.getChangeWatermark());
+        verify(bookRepo).addListener(catalog);
+
+        snapshotter.writeSnapshot(catalog);
+        assertEquals(12, CatalogSnapshotFile.load(file, new ColumnarCatalog(), authorRepo, publisherRepo));
+        verify(changeLogRepo).findSince(9);
+    }
+
+    @Test
+    public void shouldRebuildWhenChangesNeededByTheSnapshotWerePurged() throws Exception {
+        when(changeLogRepo.horizon()).thenReturn(6L);
+        when(changeLogRepo.currentWatermark()).thenReturn(20L);
+
+        ColumnarCatalog catalog = snapshotter.loadOrBuild();
+
+        assertEquals(20, catalog.getChangeWatermark());
+        verify(bookRepo).forEachRow(any(BookRowHandler.class));
+        verify(changeLogRepo, never()).findSince(anyLong());
+        assertEquals(20, CatalogSnapshotFile.load(file, new ColumnarCatalog(), authorRepo, publisherRepo));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,113 @@
+package test.catalog;
+
+import main.catalog.ColumnarCatalog;
+import main.model.Author;
+import main.model.Book;
+import main.model.BookStatus;
+import main.model.BookSummary;
+import main.model.Publisher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColumnarCatalogTest {
+    private ColumnarCatalog catalog;
+
+    @Before
+    public void setUp() throws Exception {
+        catalog = new ColumnarCatalog();
+        catalog.putAuthor(1, new Author("Martin Fowler"));
+        catalog.putAuthor(2, new Author("Kent Beck"));
+        catalog.putPublisher(1, new Publisher("Addison-Wesly"));
+        catalog.put(10, "Refactoring", new Integer[]{1, 2}, 1, BookStatus.AVAILABLE, 0);
+        catalog.put(5, "P EAA", new Integer[]{1}, 1, BookStatus.ISSUED, 0);
+        catalog.put(7, "Test Driven Development", new Integer[]{2}, 1, BookStatus.AVAILABLE, 0);
+    }
+
+    @Test
+    public void shouldFindBooksByNameIgnoringCase() throws Exception {
+        List<Book> books = catalog.findBooksByName("REFACT");
+        assertEquals(1, books.size());
+        Book book = books.get(0);
+        assertEquals(10, book.getId());
+        assertEquals("Refactoring", book.getName());
+        assertEquals("Kent Beck", book.getAuthors().get(1).getName());
+        assertEquals("Addison-Wesly", book.getPublisher().getName());
+    }
+
+    @Test
+    public void shouldFilterByStatusBeforeHydrating() throws Exception {
+        List<Book> books = catalog.findBooksByAuthor("martin fowler", BookStatus.AVAILABLE);
+        assertEquals(1, books.size());
+        assertEquals(10, books.get(0).getId());
+        assertEquals(3, catalog.findBooksByPublisher("Addison-Wesly", null).size());
+        assertEquals(1, catalog.findBooksByName("e", BookStatus.ISSUED).size());
+    }
+
+    @Test
+    public void shouldReturnSummariesWithoutAuthors() throws Exception {
+        List<BookSummary> summaries = catalog.findSummariesByName("a", BookStatus.ISSUED);
+        assertEquals(1, summaries.size());
+        assertEquals("P EAA", summaries.get(0).getName());
+        assertFalse(summaries.get(0).isAvailable());
+    }
+
+    @Test
+    public void shouldShareAuthorInstancesAcrossBooks() throws Exception {
+        assertSame(catalog.findById(10).getAuthors().get(0), catalog.findById(5).getAuthors().get(0));
+    }
+
+    @Test
+    public void shouldKeepStatusChanges() throws Exception {
+        catalog.setStatus(5, BookStatus.AVAILABLE, 1);
+        assertTrue(catalog.findById(5).isAvailable());
+    }
+
+    @Test
+    public void shouldCarryVersionIntoBooksAndIgnoreOlderStatusChanges() throws Exception {
+        catalog.setStatus(5, BookStatus.AVAILABLE, 3);
+        assertEquals(3, catalog.findById(5).getVersion());
+
+        assertFalse(catalog.setStatus(5, BookStatus.ISSUED, 2));
+        assertTrue(catalog.findById(5).isAvailable());
+
+        catalog.setStatus(5, BookStatus.ISSUED, -1);
+        assertFalse(catalog.findById(5).isAvailable());
+        assertEquals(3, catalog.findById(5).getVersion());
+    }
+
+    @Test
+    public void shouldReplaceAndRemoveBooks() throws Exception {
+        catalog.put(7, "TDD By Example", new Integer[]{2}, 1, BookStatus.AVAILABLE, 0);
+        assertEquals("TDD By Example", catalog.findById(7).getName());
+        assertTrue(catalog.remove(5));
+        assertFalse(catalog.contains(5));
+        assertEquals(2, catalog.size());
+        assertEquals("Refactoring", catalog.findById(10).getName());
+    }
+
+    @Test
+    public void shouldSurviveCompaction() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            catalog.put(7, "Test Driven Development edition " + i, new Integer[]{2, 1}, 1, BookStatus.AVAILABLE, 0);
+        }
+        assertEquals("Test Driven Development edition 4999", catalog.findById(7).getName());
+        assertEquals("Refactoring", catalog.findById(10).getName());
+        assertEquals(2, catalog.findById(7).getAuthors().size());
+    }
+
+    @Test
+    public void shouldDropBooksMissingFromAResynchronization() throws Exception {
+        catalog.booksRetained(new HashSet<>(Arrays.asList(5, 10)));
+
+        assertEquals(2, catalog.size());
+        assertFalse(catalog.contains(7));
+        assertEquals("P EAA", catalog.findById(5).getName());
+        assertEquals("Refactoring", catalog.findById(10).getName());
+    }
+}
@@ -0,0 +1,47 @@
+package test.catalog;
+
+import main.catalog.CompletionTrie;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionTrieTest {
+    private CompletionTrie trie;
+
+    @Before
+    public void setUp() throws Exception {
+        trie = new CompletionTrie();
+        trie.add("Refactoring", 40);
+        trie.add("Refactoring to Patterns", 12);
+        trie.add("Release It!", 25);
+        trie.add("Martin Fowler", 52);
+    }
+
+    @Test
+    public void shouldCompleteByPopularity() throws Exception {
+        assertEquals(Arrays.asList("Refactoring", "Release It!", "Refactoring to Patterns"), trie.complete("re", 5));
+        assertEquals(Arrays.asList("Refactoring"), trie.complete("RE", 1));
+    }
+
+    @Test
+    public void shouldReorderWhenWeightChanges() throws Exception {
+        trie.addWeight("Refactoring to Patterns", 30);
+        assertEquals(Arrays.asList("Refactoring to Patterns", "Refactoring"), trie.complete("refac", 5));
+    }
+
+    @Test
+    public void shouldKeepEntryUntilLastReferenceRemoved() throws Exception {
+        trie.add("Refactoring", 1);
+        trie.remove("Refactoring", 40);
+        assertEquals(Arrays.asList("Refactoring to Patterns", "Refactoring"), trie.complete("refactoring", 5));
+        trie.remove("Refactoring", 1);
+        assertEquals(Arrays.asList("Refactoring to Patterns"), trie.complete("refactoring", 5));
+        trie.remove("Refactoring to Patterns", 12);
+        assertTrue(trie.complete("refac", 5).isEmpty());
+        assertEquals(Arrays.asList("Release It!"), trie.complete("r", 5));
+    }
+}
@@ -0,0 +1,86 @@
+package test.catalog;
+
+import main.catalog.FuzzyTitleIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class FuzzyTitleIndexBenchmark {
+
+    public static void main(String[] args) {
+        int titles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        Random random = new Random(42);
+        String[] words = randomWords(random, 60_000);
+        String[] authors = new String[100_000];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = capitalize(words[random.nextInt(words.length)]) + " " + capitalize(words[random.nextInt(words.length)]);
+        }
+
+        FuzzyTitleIndex index = new FuzzyTitleIndex();
+        String[] corpus = new String[titles];
+        long start = System.nanoTime();
+        for (int id = 0; id < titles; id++) {
+            StringBuilder title = new StringBuilder();
+            int length = 2 + random.nextInt(5);
+            for (int w = 0; w < length; w++) {
+                if (w > 0) title.append(' ');
+                title.append(words[zipf(random, words.length)]);
+            }
+            corpus[id] = title.toString();
+            index.add(id, corpus[id], Arrays.asList(authors[random.nextInt(authors.length)]));
+        }
+        System.out.printf("indexed %d titles in %d ms%n", titles, (System.nanoTime() - start) / 1_000_000);
+
+        for (int warmup = 0; warmup < queries / 4; warmup++) {
+            index.search(typo(random, corpus[random.nextInt(titles)]), 10);
+        }
+        long[] latencies = new long[queries];
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            int target = random.nextInt(titles);
+            String query = typo(random, corpus[target]);
+            long queryStart = System.nanoTime();
+            List<?> hits = index.search(query, 10);
+            latencies[q] = System.nanoTime() - queryStart;
+            if (!hits.isEmpty()) found++;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("queries=%d hit-rate=%.3f p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms%n", queries,
+                (double) found / queries, latencies[queries / 2] / 1e6, latencies[queries * 95 / 100] / 1e6,
+                latencies[queries * 99 / 100] / 1e6, latencies[queries - 1] / 1e6);
+    }
+
+    private static String[] randomWords(Random random, int count) {
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int c = 0; c < length; c++) word.append(letters.charAt(random.nextInt(letters.length())));
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    private static int zipf(Random random, int n) {
+        return (int) Math.min(n - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(n))) - 1);
+    }
+
+    private static String typo(Random random, String title) {
+        List<String> tokens = new ArrayList<>(Arrays.asList(title.split(" ")));
+        int w = random.nextInt(tokens.size());
+        String word = tokens.get(w);
+        if (word.length() > 4) {
+            int at = 1 + random.nextInt(word.length() - 2);
+            tokens.set(w, word.substring(0, at) + word.substring(at + 1));
+        }
+        return String.join(" ", tokens.subList(0, Math.min(3, tokens.size())));
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
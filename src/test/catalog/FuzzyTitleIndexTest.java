@@ -0,0 +1,74 @@
+package test.catalog;
+
+import main.catalog.FuzzyTitleIndex;
+import main.catalog.SearchHit;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FuzzyTitleIndexTest {
+    private FuzzyTitleIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new FuzzyTitleIndex();
+        index.add(1, "Refactoring", Arrays.asList("Martin Fowler"));
+        index.add(2, "Refactoring to Patterns", Arrays.asList("Joshua Kerievsky"));
+        index.add(3, "Patterns of Enterprise Application Architecture", Arrays.asList("Martin Fowler"));
+        index.add(4, "Test Driven Development", Arrays.asList("Kent Beck"));
+    }
+
+    @Test
+    public void shouldFindTitleDespiteTypo() throws Exception {
+        List<SearchHit> hits = index.search("refactorng", 10);
+        assertEquals(2, hits.size());
+        assertEquals(1, hits.get(0).getBookId());
+        assertEquals(2, hits.get(1).getBookId());
+    }
+
+    @Test
+    public void shouldCountRepeatedBigramsWhenFilteringCandidates() throws Exception {
+        index.add(5, "Banana Republic", Arrays.asList("Someone Else"));
+        List<SearchHit> hits = index.search("banan", 10);
+        assertEquals(1, hits.size());
+        assertEquals(5, hits.get(0).getBookId());
+    }
+
+    @Test
+    public void shouldReuseSlotsOfReindexedBooks() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            index.add(1, "Refactoring " + i, Arrays.asList("Martin Fowler"));
+        }
+        index.remove(4);
+        index.add(5, "Working Effectively with Legacy Code", Arrays.asList("Michael Feathers"));
+        assertEquals(4, index.slotCount());
+        assertEquals(1, index.search("refactoring", 10).get(0).getBookId());
+    }
+
+    @Test
+    public void shouldRankTitleMatchesAboveAuthorMatches() throws Exception {
+        index.add(5, "Fowler Explained", Arrays.asList("Someone Else"));
+        List<SearchHit> hits = index.search("fowlr", 10);
+        assertEquals(5, hits.get(0).getBookId());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void shouldLimitResultsToTopK() throws Exception {
+        List<SearchHit> hits = index.search("patterns refactoring", 1);
+        assertEquals(1, hits.size());
+        assertEquals(2, hits.get(0).getBookId());
+    }
+
+    @Test
+    public void shouldForgetRemovedBooks() throws Exception {
+        index.remove(1);
+        index.add(2, "Working Effectively with Legacy Code", Arrays.asList("Michael Feathers"));
+        assertTrue(index.search("refactoring", 10).isEmpty());
+    }
+}
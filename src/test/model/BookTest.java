@@ -2,13 +2,17 @@ package test.model;
 
 import main.model.Author;
 import main.model.Book;
+import main.model.BookAssociations;
+import main.model.BookStatus;
 import main.model.Publisher;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -34,5 +38,49 @@ public class BookTest {
         assertFalse("should be available failed", book.isAvailable());
     }
 
+    @Test
+    public void shouldCompareAndPrintLazyBooksWithoutLoadingThem() throws Exception {
+        BookAssociations unreachable = book -> {
+            throw new Exception("should not load");
+        };
+        Book book = Book.lazy(7, "refactoring", BookStatus.AVAILABLE, unreachable);
+        book.setVersion(2);
+        Book sameRow = Book.lazy(7, "refactoring", BookStatus.AVAILABLE, unreachable);
+        sameRow.setVersion(2);
+        Book newerRow = Book.lazy(7, "refactoring", BookStatus.ISSUED, unreachable);
+        newerRow.setVersion(3);
+        Book otherRow = Book.lazy(8, "refactoring", BookStatus.AVAILABLE, unreachable);
+        otherRow.setVersion(2);
+
+        assertEquals(book, sameRow);
+        assertEquals(book.hashCode(), sameRow.hashCode());
+        assertEquals(book, newerRow);
+        assertNotEquals(book, otherRow);
+        assertTrue(book.toString().contains("name='refactoring'"));
+        assertFalse(book.hasLoadedAssociations());
+    }
+
+    @Test
+    public void shouldStillFindAPersistedBookInASetAfterItChanges() throws Exception {
+        List<Author> authors = new ArrayList<>();
+        authors.add(new Author("Martin"));
+        Book book = new Book("refactoring", authors, new Publisher("Addison"));
+        book.setId(7);
+        book.setVersion(2);
+        Set<Book> books = new HashSet<>();
+        books.add(book);
+
+        book.issue();
+        book.setVersion(3);
+        book.rename("Refactoring 2nd Edition");
 
+        assertTrue(books.contains(book));
+    }
+
+    @Test
+    public void shouldRejectNullPublisher() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Publisher cant be null");
+        new Book("refactoring", new ArrayList<Author>(), null);
+    }
 }
@@ -0,0 +1,56 @@
+package test.repository;
+
+import main.repository.AuthorRepo;
+import main.repository.BaseDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AuthorRepoTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+
+    private AuthorRepo authorRepo;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(4);
+        authorRepo = new AuthorRepo(baseDataSource);
+    }
+
+    @Test
+    public void shouldBindTheNameInsteadOfConcatenatingIt() throws Exception {
+        assertEquals(4, authorRepo.findIdByName("O'Reilly'; drop table author; --"));
+
+        verify(connection).prepareStatement("select id from author where lower(name)=lower(?) order by id limit 1");
+        verify(statement).setString(1, "O'Reilly'; drop table author; --");
+        verify(connection, never()).createStatement();
+    }
+
+    @Test
+    public void shouldInsertWithABoundNameAndReturnTheNewId() throws Exception {
+        assertEquals(4, authorRepo.save("Martin O'Fowler"));
+
+        verify(connection).prepareStatement("insert into author(name) values(?) returning id");
+        verify(statement).setString(1, "Martin O'Fowler");
+        verify(connection, never()).createStatement();
+    }
+}
@@ -0,0 +1,130 @@
+package test.repository;
+
+import main.model.Book;
+import main.model.BookStatus;
+import main.repository.AuthorRepo;
+import main.repository.BaseDataSource;
+import main.repository.BookHydrator;
+import main.repository.PublisherRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BookHydratorTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+
+    private final Set<String> queryThreads = Collections.synchronizedSet(new HashSet<String>());
+    private AuthorRepo authorRepo;
+    private PublisherRepo publisherRepo;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf(eq("int"), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] ids = (Object[]) invocation.getArguments()[1];
+            Array array = mock(Array.class);
+            when(array.getArray()).thenReturn(ids);
+            return array;
+        });
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> namesById((String) invocation.getArguments()[0]));
+        authorRepo = new AuthorRepo(baseDataSource);
+        publisherRepo = new PublisherRepo(baseDataSource);
+    }
+
+    @Test
+    public void shouldHydrateRowsInOrderWithSharedAuthors() throws Exception {
+        List<Book> books = new BookHydrator(authorRepo, publisherRepo).hydrate(Arrays.asList(
+                new BookHydrator.Row(10, "Refactoring", new Integer[]{1, 2}, 3, BookStatus.ISSUED),
+                new BookHydrator.Row(11, "P EAA", new Integer[]{1}, 3, BookStatus.AVAILABLE)));
+
+        assertEquals("Refactoring", books.get(0).getName());
+        assertEquals("author 2", books.get(0).getAuthors().get(1).getName());
+        assertEquals("publisher 3", books.get(1).getPublisher().getName());
+        assertSame(books.get(0).getAuthors().get(0), books.get(1).getAuthors().get(0));
+        assertFalse(books.get(0).isAvailable());
+        assertEquals(11, books.get(1).getId());
+    }
+
+    @Test
+    public void shouldFanOutWidePagesAcrossLanes() throws Exception {
+        BookHydrator hydrator = new BookHydrator(baseDataSource, authorRepo, publisherRepo, 4, 8);
+        List<BookHydrator.Row> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new BookHydrator.Row(i, "Book " + i, new Integer[]{i, i + 1000}, i % 7, BookStatus.AVAILABLE));
+        }
+        List<Book> books = hydrator.hydrate(rows);
+        hydrator.close();
+
+        assertEquals(100, books.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Book " + i, books.get(i).getName());
+            assertEquals("author " + (i + 1000), books.get(i).getAuthors().get(1).getName());
+            assertEquals("publisher " + (i % 7), books.get(i).getPublisher().getName());
+        }
+        assertTrue(queryThreads.contains("book-hydrator"));
+        assertFalse(queryThreads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void shouldDeferAssociationsAndLoadThemForTheWholePageOnFirstAccess() throws Exception {
+        BookHydrator hydrator = new BookHydrator(authorRepo, publisherRepo);
+        hydrator.setLazy(true);
+        List<Book> books = hydrator.hydrate(Arrays.asList(
+                new BookHydrator.Row(10, "Refactoring", new Integer[]{1, 2}, 3, BookStatus.ISSUED),
+                new BookHydrator.Row(11, "P EAA", new Integer[]{1}, 4, BookStatus.AVAILABLE)));
+
+        assertEquals("P EAA", books.get(1).getName());
+        assertFalse(books.get(0).isAvailable());
+        assertFalse(books.get(0).hasLoadedAssociations());
+        verify(connection, never()).prepareStatement(anyString());
+
+        assertEquals("publisher 4", books.get(1).getPublisher().getName());
+        assertTrue(books.get(0).hasLoadedAssociations());
+        assertEquals("author 2", books.get(0).getAuthors().get(1).getName());
+        assertSame(books.get(0).getAuthors().get(0), books.get(1).getAuthors().get(0));
+        verify(connection, times(2)).prepareStatement(anyString());
+    }
+
+    private PreparedStatement namesById(String sql) throws SQLException {
+        String prefix = sql.contains("from author") ? "author " : "publisher ";
+        PreparedStatement statement = mock(PreparedStatement.class);
+        Object[][] bound = new Object[1][];
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            queryThreads.add(Thread.currentThread().getName());
+            return rows(prefix, bound[0]);
+        });
+        doAnswer(invocation -> {
+            bound[0] = (Object[]) ((Array) invocation.getArguments()[1]).getArray();
+            return null;
+        }).when(statement).setArray(eq(1), any(Array.class));
+        return statement;
+    }
+
+    private ResultSet rows(String prefix, Object[] ids) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        int[] cursor = {-1};
+        when(resultSet.next()).thenAnswer(invocation -> ++cursor[0] < ids.length);
+        when(resultSet.getInt("id")).thenAnswer(invocation -> ids[cursor[0]]);
+        when(resultSet.getString("name")).thenAnswer(invocation -> prefix + ids[cursor[0]]);
+        return resultSet;
+    }
+}
@@ -0,0 +1,145 @@
+package test.repository;
+
+import main.model.Author;
+import main.model.Book;
+import main.model.Publisher;
+import main.repository.AuthorRepo;
+import main.repository.BaseDataSource;
+import main.repository.BookRepo;
+import main.repository.PublisherRepo;
+import main.repository.StaleBookException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class BookRepoTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private AuthorRepo authorRepo;
+    @Mock
+    private PublisherRepo publisherRepo;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet raced;
+    @Mock
+    private ResultSet resolved;
+    @Mock
+    private PreparedStatement versionStatement;
+    @Mock
+    private ResultSet currentVersion;
+
+    private BookRepo bookRepo;
+    private Book book;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(baseDataSource.getReadConnection(connection)).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(connection.prepareStatement("select version from book where id=?")).thenReturn(versionStatement);
+        when(versionStatement.executeQuery()).thenReturn(currentVersion);
+        when(connection.createArrayOf(eq("varchar"), any(Object[].class))).thenReturn(mock(Array.class));
+        Array authorIds = mock(Array.class);
+        when(authorIds.getArray()).thenReturn(new Integer[]{4, 5});
+        when(resolved.next()).thenReturn(true);
+        when(resolved.getInt("id")).thenReturn(9);
+        when(resolved.getInt("publisher_id")).thenReturn(2);
+        when(resolved.getInt("version")).thenReturn(3);
+        when(resolved.getArray("author_ids")).thenReturn(authorIds);
+        bookRepo = new BookRepo(baseDataSource, publisherRepo, authorRepo);
+        book = new Book("Refactoring", Arrays.asList(new Author("Martin Fowler"), new Author("Kent Beck")), new Publisher("Addison-Wesly"));
+    }
+
+    @Test
+    public void shouldResolveNamesAndInsertInOneStatementRetryingOnceAfterARace() throws Exception {
+        when(statement.executeQuery()).thenReturn(raced, resolved);
+
+        assertSame(book, bookRepo.save(book));
+
+        assertEquals(9, book.getId());
+        assertEquals(3, book.getVersion());
+        verify(authorRepo).installNameConstraint();
+        verify(publisherRepo).installNameConstraint();
+        verify(statement, times(2)).executeQuery();
+        verify(authorRepo, never()).findIdByName(anyString());
+    }
+
+    @Test
+    public void shouldReportUpdateAsFailedWhenNamesNeverResolve() throws Exception {
+        when(statement.executeQuery()).thenReturn(raced);
+        book.setId(9);
+        book.changeAuthors(Arrays.asList(new Author("Kent Beck")));
+
+        assertFalse(bookRepo.update(book));
+        assertFalse(bookRepo.update(book));
+
+        verify(statement, times(4)).executeQuery();
+        verify(authorRepo, times(1)).installNameConstraint();
+        verify(connection, times(4)).prepareStatement(startsWith("with names(name, ord)"));
+        verify(connection, never()).prepareStatement(contains("resolved_publisher"));
+    }
+
+    @Test
+    public void shouldWriteOnlyTheStatusColumnForCirculationChanges() throws Exception {
+        when(statement.executeQuery()).thenReturn(resolved);
+        book.setId(9);
+        book.setVersion(2);
+
+        assertTrue(bookRepo.update(book));
+        verify(connection, never()).prepareStatement(anyString());
+
+        book.issue();
+        assertTrue(bookRepo.update(book));
+
+        verify(connection).prepareStatement("update book set status=?, version=book.version+1 where book.id=? and book.version=? " +
+                "returning book.id, book.author_ids, book.publisher_id, book.version");
+        verify(statement).setString(1, "ISSUED");
+        verify(statement).setInt(3, 2);
+        verify(connection, never()).createArrayOf(anyString(), any(Object[].class));
+        assertEquals(3, book.getVersion());
+        assertTrue(book.getDirtyFields().isEmpty());
+    }
+
+    @Test
+    public void shouldBumpVersionOnUpdateAndRejectStaleVersions() throws Exception {
+        when(statement.executeQuery()).thenReturn(resolved, raced);
+        when(currentVersion.next()).thenReturn(true);
+        when(currentVersion.getInt(1)).thenReturn(3);
+        book.setId(9);
+        book.setVersion(2);
+        book.rename("Refactoring, 2nd Edition");
+
+        assertTrue(bookRepo.update(book));
+        assertEquals(3, book.getVersion());
+        verify(statement).setString(1, "Refactoring, 2nd Edition");
+        verify(statement).setInt(3, 2);
+
+        book.setVersion(2);
+        book.issue();
+        try {
+            bookRepo.update(book);
+            fail("Stale update should be rejected");
+        } catch (StaleBookException e) {
+            assertEquals(2, e.getExpectedVersion());
+            assertEquals(3, e.getActualVersion());
+        }
+    }
+}
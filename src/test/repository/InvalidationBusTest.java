@@ -0,0 +1,92 @@
+package test.repository;
+
+import main.model.BookStatus;
+import main.repository.Invalidation;
+import main.repository.InvalidationBus;
+import main.repository.LocalInvalidationBus;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InvalidationBusTest {
+    private LocalInvalidationBus nodeA;
+    private LocalInvalidationBus nodeB;
+    private List<Invalidation> receivedByA;
+    private List<Invalidation> receivedByB;
+
+    @Before
+    public void setUp() throws Exception {
+        List<LocalInvalidationBus> network = new CopyOnWriteArrayList<>();
+        nodeA = new LocalInvalidationBus("a", network);
+        nodeB = new LocalInvalidationBus("b", network);
+        receivedByA = new ArrayList<>();
+        receivedByB = new ArrayList<>();
+        nodeA.subscribe(receivedByA::add);
+        nodeB.subscribe(receivedByB::add);
+    }
+
+    @Test
+    public void shouldDeliverToOtherNodesOnly() throws Exception {
+        nodeA.publish(Invalidation.Type.BOOK, 7, null);
+        nodeA.flush();
+        assertTrue(receivedByA.isEmpty());
+        assertEquals(1, receivedByB.size());
+        assertEquals("a", receivedByB.get(0).getOrigin());
+        assertEquals(7, receivedByB.get(0).getBookId());
+    }
+
+    @Test
+    public void shouldCoalesceBurstsPerBook() throws Exception {
+        nodeA.publish(Invalidation.Type.BOOK_STATUS, 7, BookStatus.ISSUED);
+        nodeA.publish(Invalidation.Type.BOOK_STATUS, 7, BookStatus.AVAILABLE);
+        nodeA.publish(Invalidation.Type.BOOK_STATUS, 8, BookStatus.ISSUED);
+        nodeA.publish(Invalidation.Type.BOOK, 8, null);
+        nodeA.publish(Invalidation.Type.BOOK_STATUS, 8, BookStatus.AVAILABLE);
+        assertEquals(2, nodeA.pendingCount());
+        nodeA.flush();
+        assertEquals(2, receivedByB.size());
+        assertEquals(BookStatus.AVAILABLE, receivedByB.get(0).getStatus());
+        assertEquals(Invalidation.Type.BOOK, receivedByB.get(1).getType());
+        assertEquals(0, nodeA.pendingCount());
+    }
+
+    @Test
+    public void shouldRequeueAFailedBatchBehindNewerInvalidations() throws Exception {
+        List<List<Invalidation>> sent = new ArrayList<>();
+        boolean[] failing = {true};
+        InvalidationBus flaky = new InvalidationBus("c") {
+            @Override
+            protected void send(List<Invalidation> batch) throws Exception {
+                if (failing[0]) throw new Exception("connection lost");
+                sent.add(batch);
+            }
+        };
+        flaky.publish(Invalidation.Type.BOOK_STATUS, 7, BookStatus.ISSUED);
+        flaky.publish(Invalidation.Type.BOOK, 9, null);
+        try {
+            flaky.flush();
+            fail();
+        } catch (Exception e) {
+            assertEquals("connection lost", e.getMessage());
+        }
+        flaky.publish(Invalidation.Type.BOOK_STATUS, 7, BookStatus.AVAILABLE);
+        flaky.publish(Invalidation.Type.BOOK_STATUS, 9, BookStatus.ISSUED);
+        assertEquals(2, flaky.pendingCount());
+
+        failing[0] = false;
+        flaky.flush();
+
+        assertEquals(1, sent.size());
+        assertEquals(2, sent.get(0).size());
+        assertEquals(BookStatus.AVAILABLE, sent.get(0).get(0).getStatus());
+        assertEquals(Invalidation.Type.BOOK, sent.get(0).get(1).getType());
+        assertEquals(0, flaky.pendingCount());
+    }
+}
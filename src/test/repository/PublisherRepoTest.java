@@ -0,0 +1,54 @@
+package test.repository;
+
+import main.repository.BaseDataSource;
+import main.repository.PublisherRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class PublisherRepoTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+    }
+
+    @Test
+    public void shouldLookUpANameThisNodeHasNeverSeen() throws Exception {
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(12);
+        PublisherRepo publisherRepo = new PublisherRepo(baseDataSource);
+
+        assertEquals(12, publisherRepo.findIdByName("Pragmatic Bookshelf"));
+
+        verify(statement).setString(1, "Pragmatic Bookshelf");
+        verify(statement).executeQuery();
+    }
+
+    @Test
+    public void shouldReportAMissingNameOnlyAfterAskingTheTable() throws Exception {
+        PublisherRepo publisherRepo = new PublisherRepo(baseDataSource);
+
+        assertEquals(-1, publisherRepo.findIdByName("Nobody Press"));
+
+        verify(statement).executeQuery();
+    }
+}
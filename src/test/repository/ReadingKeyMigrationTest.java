@@ -0,0 +1,103 @@
+package test.repository;
+
+import main.repository.BaseDataSource;
+import main.repository.ReadingKeyMigration;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.*;
+
+public class ReadingKeyMigrationTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Statement ddl;
+    @Mock
+    private PreparedStatement nextBatch;
+    @Mock
+    private PreparedStatement backfill;
+
+    private final Set<String> relations = new HashSet<>(Arrays.asList("reading", "reading_user_book_active_idx", "reading_book_idx"));
+    private int keyColumns;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(ddl);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> statementFor((String) invocation.getArguments()[0]));
+    }
+
+    @Test
+    public void shouldAddMissingKeyColumnsWithoutBackfilling() throws Exception {
+        new ReadingKeyMigration(baseDataSource).install();
+
+        verify(ddl).executeUpdate("alter table reading add column if not exists user_id int, add column if not exists book_id int");
+        verify(ddl, never()).executeUpdate(startsWith("alter table reading_archive"));
+        verify(ddl, never()).executeUpdate(startsWith("create index"));
+        verify(backfill, never()).executeUpdate();
+    }
+
+    @Test
+    public void shouldSkipDdlWhenKeyColumnsArePresent() throws Exception {
+        keyColumns = 2;
+        new ReadingKeyMigration(baseDataSource).install();
+
+        verify(ddl, never()).executeUpdate(anyString());
+    }
+
+    @Test
+    public void shouldBackfillInIdRangeBatchesUntilNothingIsLeft() throws Exception {
+        keyColumns = 2;
+        ResultSet first = batchEnd(100, false);
+        ResultSet second = batchEnd(150, false);
+        ResultSet done = batchEnd(0, true);
+        when(nextBatch.executeQuery()).thenReturn(first, second, done);
+        when(backfill.executeUpdate()).thenReturn(100, 50);
+
+        assertEquals(150, new ReadingKeyMigration(baseDataSource).run(100));
+
+        InOrder order = inOrder(backfill);
+        order.verify(backfill).setInt(1, 0);
+        order.verify(backfill).setInt(2, 100);
+        order.verify(backfill).setInt(1, 100);
+        order.verify(backfill).setInt(2, 150);
+        verify(backfill, times(2)).executeUpdate();
+    }
+
+    private PreparedStatement statementFor(String sql) throws SQLException {
+        if (sql.startsWith("select max(id)")) return nextBatch;
+        if (sql.startsWith("update ")) return backfill;
+        PreparedStatement statement = mock(PreparedStatement.class);
+        String[] bound = new String[1];
+        doAnswer(invocation -> bound[0] = (String) invocation.getArguments()[1]).when(statement).setString(anyInt(), anyString());
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getBoolean(1)).thenAnswer(invocation -> relations.contains(bound[0]));
+        when(resultSet.getInt(1)).thenAnswer(invocation -> keyColumns);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        return statement;
+    }
+
+    private static ResultSet batchEnd(int id, boolean empty) throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(id);
+        when(resultSet.wasNull()).thenReturn(empty);
+        return resultSet;
+    }
+}
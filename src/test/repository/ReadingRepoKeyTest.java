@@ -0,0 +1,94 @@
+package test.repository;
+
+import main.model.*;
+import main.repository.BaseDataSource;
+import main.repository.BookRepo;
+import main.repository.ReadingRepo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReadingRepoKeyTest {
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private BookRepo bookRepo;
+    @Mock
+    private PreparedStatement statement;
+    @Mock
+    private ResultSet resultSet;
+
+    private ReadingRepo readingRepo;
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(baseDataSource.getReadConnection(connection)).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.getDate("borrowed_date")).thenReturn(new Date(0));
+        readingRepo = new ReadingRepo(baseDataSource, bookRepo);
+        user = new User("rajbharath", new ArrayList<Permission>());
+        user.setId(3);
+    }
+
+    @Test
+    public void shouldKeyActiveReadingsByBookIdSoCopiesOfOneTitleStayApart() throws Exception {
+        Book first = copy(7);
+        Book second = copy(8);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt("book_id")).thenReturn(7, 8);
+        when(resultSet.getInt("id")).thenReturn(70, 80);
+
+        Map<Integer, Reading> readings = readingRepo.findByUserAndBooks(user, Arrays.asList(first, second));
+
+        assertEquals(2, readings.size());
+        assertSame(first, readings.get(7).getBook());
+        assertEquals(80, readings.get(8).getId());
+        verify(connection).prepareStatement("select id,user_id,book_id,borrowed_date,due_date,returned_date from reading " +
+                "where user_id=? and book_id = any(?) and returned_date is null order by id");
+        verify(statement).setInt(1, 3);
+        ArgumentCaptor<Object[]> ids = ArgumentCaptor.forClass(Object[].class);
+        verify(connection).createArrayOf(eq("int"), ids.capture());
+        assertArrayEquals(new Object[]{7, 8}, ids.getValue());
+    }
+
+    @Test
+    public void shouldLookUpActiveReadingByUserAndBookIds() throws Exception {
+        Book book = copy(7);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt("id")).thenReturn(70);
+
+        Reading reading = readingRepo.findByUserAndBook(user, book);
+
+        assertEquals(70, reading.getId());
+        verify(connection).prepareStatement("select id,user_id,book_id,borrowed_date,due_date,returned_date from reading " +
+                "where user_id=? and book_id=? and returned_date is null");
+        verify(statement).setInt(1, 3);
+        verify(statement).setInt(2, 7);
+    }
+
+    private static Book copy(int id) throws Exception {
+        Book book = new Book("Refactoring", Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(id);
+        return book;
+    }
+}
@@ -1,10 +1,13 @@
 package test.repository;
 
 import main.model.Book;
+import main.model.BookStatus;
 import main.model.Reading;
 import main.model.User;
+import main.repository.AuthorRepo;
 import main.repository.BaseDataSource;
 import main.repository.BookRepo;
+import main.repository.PublisherRepo;
 import main.repository.ReadingRepo;
 import org.junit.After;
 import org.junit.Before;
@@ -14,6 +17,7 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Date;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
@@ -23,28 +27,29 @@ public class ReadingRepoTest {
     @Mock
     User user;
 
-    @Mock
-    Book book;
-
     @Mock
     BookRepo bookRepo;
 
+    private Book book;
+
     @Before
     public void setUp() throws Exception {
 
         baseDataSource = new BaseDataSource("org.postgresql.Driver", "jdbc:postgresql://localhost:5432/library_mgmt_upgraded", "postgres", "1");
         baseDataSource.setAutoCommit(false);
         MockitoAnnotations.initMocks(this);
+        book = new BookRepo(baseDataSource, new PublisherRepo(baseDataSource), new AuthorRepo(baseDataSource)).findByName("Refactoring");
     }
 
     @Test
     public void shouldCreateReading() throws Exception {
         when(user.getUsername()).thenReturn("rajbharath");
-        when(book.getName()).thenReturn("Refactoring");
-        when(bookRepo.update(book)).thenReturn(true);
+        int version = book.getVersion();
+        book.setBookStatus(BookStatus.ISSUED);
 
         ReadingRepo readingRepo = new ReadingRepo(baseDataSource, bookRepo);
         assertTrue("should update Reading failed", readingRepo.save(new Reading(user, book, new Date(System.currentTimeMillis()))));
+        assertEquals(version + 1, book.getVersion());
     }
 
     @After
@@ -0,0 +1,139 @@
+package test.repository;
+
+import main.model.*;
+import main.repository.BaseDataSource;
+import main.repository.BookRepo;
+import main.repository.ReadingRepo;
+import main.repository.StaleBookException;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ReadingRepoVersionTest {
+    private static final String STATUS_SQL = "update book set status=?, version=version+1 where id=? and version=? returning version";
+
+    @Mock
+    private BaseDataSource baseDataSource;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Connection readConnection;
+    @Mock
+    private BookRepo bookRepo;
+    @Mock
+    private PreparedStatement insert;
+    @Mock
+    private PreparedStatement statusUpdate;
+    @Mock
+    private PreparedStatement versionQuery;
+    @Mock
+    private ResultSet updated;
+    @Mock
+    private ResultSet current;
+
+    private ReadingRepo readingRepo;
+    private Reading reading;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(baseDataSource.getConnection()).thenReturn(connection);
+        when(baseDataSource.getReadConnection(connection)).thenReturn(readConnection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString(), any(String[].class))).thenReturn(insert);
+        when(connection.prepareStatement(STATUS_SQL)).thenReturn(statusUpdate);
+        when(connection.prepareStatement("select version from book where id=?")).thenReturn(versionQuery);
+        when(insert.executeUpdate()).thenReturn(1);
+        when(insert.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
+        when(statusUpdate.executeQuery()).thenReturn(updated);
+        when(versionQuery.executeQuery()).thenReturn(current);
+        readingRepo = new ReadingRepo(baseDataSource, bookRepo);
+
+        Book book = new Book("Refactoring", Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(7);
+        book.setVersion(2);
+        book.issue();
+        reading = new Reading(new User("rajbharath", new ArrayList<Permission>()), book, new java.util.Date());
+    }
+
+    @Test
+    public void shouldClaimTheBookVersionInTheReadingTransaction() throws Exception {
+        when(updated.next()).thenReturn(true);
+        when(updated.getInt(1)).thenReturn(3);
+
+        assertTrue(readingRepo.save(reading));
+
+        InOrder order = inOrder(connection, statusUpdate);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(statusUpdate).setInt(3, 2);
+        order.verify(connection).commit();
+        verify(bookRepo, never()).update(any(Book.class));
+        assertEquals(3, reading.getBook().getVersion());
+        assertTrue(reading.getBook().getDirtyFields().isEmpty());
+    }
+
+    @Test
+    public void shouldRollBackAndReportAStaleBook() throws Exception {
+        when(current.next()).thenReturn(true);
+        when(current.getInt(1)).thenReturn(5);
+
+        try {
+            readingRepo.save(reading);
+            fail();
+        } catch (StaleBookException e) {
+            assertEquals(5, e.getActualVersion());
+        }
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertEquals(2, reading.getBook().getVersion());
+    }
+
+    @Test
+    public void shouldRefreshFromThePrimary() throws Exception {
+        PreparedStatement refresh = mock(PreparedStatement.class);
+        when(connection.prepareStatement("select status,version from book where id=?")).thenReturn(refresh);
+        when(refresh.executeQuery()).thenReturn(current);
+        when(current.next()).thenReturn(true);
+        when(current.getString("status")).thenReturn("available");
+        when(current.getInt("version")).thenReturn(6);
+
+        assertTrue(readingRepo.refresh(reading.getBook()));
+
+        assertEquals(6, reading.getBook().getVersion());
+        assertTrue(reading.getBook().isAvailable());
+        verifyZeroInteractions(readConnection);
+    }
+
+    @Test
+    public void shouldLeaveTheCallersTransactionToTheCaller() throws Exception {
+        when(connection.getAutoCommit()).thenReturn(false);
+        when(current.next()).thenReturn(true);
+        when(current.getInt(1)).thenReturn(5);
+
+        try {
+            readingRepo.save(reading);
+            fail();
+        } catch (StaleBookException e) {
+            assertEquals(5, e.getActualVersion());
+        }
+        when(updated.next()).thenReturn(true);
+        when(updated.getInt(1)).thenReturn(3);
+        assertTrue(readingRepo.save(reading));
+
+        verify(connection, never()).setAutoCommit(anyBoolean());
+        verify(connection, never()).commit();
+        verify(connection, never()).rollback();
+    }
+}
@@ -0,0 +1,122 @@
+package test.repository;
+
+import main.repository.ReplicatedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ReplicatedDataSourceTest {
+    private static final Map<String, Connection> CONNECTIONS = new HashMap<>();
+
+    private Driver driver;
+    private ReplicatedDataSource dataSource;
+
+    public static class FakeDriver implements Driver {
+        @Override
+        public Connection connect(String url, Properties info) {
+            return CONNECTIONS.get(url);
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fake:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        for (String name : Arrays.asList("primary", "replica1", "replica2")) {
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            when(connection.createStatement()).thenReturn(mock(Statement.class));
+            CONNECTIONS.put("jdbc:fake:" + name, connection);
+        }
+        driver = new FakeDriver();
+        DriverManager.registerDriver(driver);
+        dataSource = new ReplicatedDataSource(FakeDriver.class.getName(), "jdbc:fake:primary", "postgres", "1",
+                Arrays.asList("jdbc:fake:replica1", "jdbc:fake:replica2"), ReplicatedDataSource.Balancing.ROUND_ROBIN, 60000);
+    }
+
+    @Test
+    public void shouldSpreadReadsAcrossReplicas() throws Exception {
+        Connection write = dataSource.getConnection();
+        Connection read = dataSource.getReadConnection(write);
+
+        read.prepareStatement("select id from book").executeQuery();
+        read.prepareStatement("select id from book").executeQuery();
+
+        verify(CONNECTIONS.get("jdbc:fake:replica1")).prepareStatement("select id from book");
+        verify(CONNECTIONS.get("jdbc:fake:replica2")).prepareStatement("select id from book");
+        verify(CONNECTIONS.get("jdbc:fake:primary"), never()).prepareStatement("select id from book");
+        assertEquals(0, dataSource.inFlight(0));
+    }
+
+    @Test
+    public void shouldPinReadsToPrimaryAfterAWriteReturningRows() throws Exception {
+        Connection write = dataSource.getConnection();
+        Connection read = dataSource.getReadConnection(write);
+
+        write.prepareStatement("select version from book where id=?").executeQuery();
+        read.prepareStatement("select id from book where id=?");
+        verify(CONNECTIONS.get("jdbc:fake:primary"), never()).prepareStatement("select id from book where id=?");
+
+        write.prepareStatement("with new_publisher as (select 1) update book set status=? where book.id=? returning book.version").executeQuery();
+        read.prepareStatement("select id from book where id=?");
+        verify(CONNECTIONS.get("jdbc:fake:primary")).prepareStatement("select id from book where id=?");
+    }
+
+    @Test
+    public void shouldPinReadsToPrimaryAfterAnUpdate() throws Exception {
+        Connection write = dataSource.getConnection();
+        Connection read = dataSource.getReadConnection(write);
+
+        write.createStatement().executeUpdate("delete from book where id=1");
+        read.createStatement();
+
+        verify(CONNECTIONS.get("jdbc:fake:primary"), times(2)).createStatement();
+        verify(CONNECTIONS.get("jdbc:fake:replica1"), never()).createStatement();
+        verify(CONNECTIONS.get("jdbc:fake:replica2"), never()).createStatement();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        DriverManager.deregisterDriver(driver);
+        CONNECTIONS.clear();
+    }
+}
@@ -42,6 +42,7 @@ public class UserRepoTest {
     public void shouldFetchAvailableUserDetails() throws Exception {
 
         when(baseDataSource.getConnection()).thenReturn(connection);
+        when(baseDataSource.getReadConnection(connection)).thenReturn(connection);
         when(connection.createStatement()).thenReturn(statement);
         when(statement.executeQuery(any(String.class))).thenReturn(resultSet);
         when(resultSet.next()).thenReturn(true);
@@ -60,6 +61,7 @@ public class UserRepoTest {
     public void shouldReturnNullForInvalidUserDetails() throws Exception {
 
         when(baseDataSource.getConnection()).thenReturn(connection);
+        when(baseDataSource.getReadConnection(connection)).thenReturn(connection);
         when(connection.createStatement()).thenReturn(statement);
         when(statement.executeQuery(any(String.class))).thenReturn(resultSet);
         when(resultSet.next()).thenReturn(false);
@@ -0,0 +1,73 @@
+package test.service;
+
+import main.model.AuditEvent;
+import main.model.Permission;
+import main.model.User;
+import main.repository.AuditSink;
+import main.service.AuditLog;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AuditLogTest {
+    private final List<AuditEvent> written = Collections.synchronizedList(new ArrayList<AuditEvent>());
+
+    @Test
+    public void shouldFlushEveryEventOnClose() throws Exception {
+        AuditLog auditLog = new AuditLog(new CollectingSink(null), 16, AuditLog.Backpressure.BLOCK);
+        for (int i = 0; i < 1000; i++) {
+            auditLog.record("rajbharath", "BORROW", String.valueOf(i));
+        }
+        auditLog.close();
+
+        assertEquals(1000, written.size());
+        assertEquals("999", written.get(999).getSubject());
+        assertEquals(0, auditLog.droppedCount());
+    }
+
+    @Test
+    public void shouldDropAndReportWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AuditLog auditLog = new AuditLog(new CollectingSink(release), 4, AuditLog.Backpressure.DROP);
+        User user = new User("admin", new ArrayList<Permission>());
+        for (int i = 0; i < 100; i++) {
+            auditLog.record(user.getUsername(), "ADD_BOOK", String.valueOf(i));
+        }
+        release.countDown();
+        auditLog.close();
+
+        assertTrue(auditLog.droppedCount() > 0);
+        long recorded = 0;
+        long reportedDrops = 0;
+        for (AuditEvent event : written) {
+            if (event.getAction().equals("DROPPED")) reportedDrops += Long.parseLong(event.getSubject());
+            else recorded++;
+        }
+        assertEquals(auditLog.droppedCount(), reportedDrops);
+        assertEquals(100, recorded + reportedDrops);
+    }
+
+    private class CollectingSink implements AuditSink {
+        private final CountDownLatch release;
+
+        CollectingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void write(List<AuditEvent> events) throws Exception {
+            if (release != null) release.await();
+            written.addAll(events);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
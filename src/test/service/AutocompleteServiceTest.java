@@ -0,0 +1,70 @@
+package test.service;
+
+import main.catalog.ColumnarCatalog;
+import main.model.Author;
+import main.model.BookStatus;
+import main.model.Publisher;
+import main.repository.ReadingRepo;
+import main.service.AutocompleteService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+public class AutocompleteServiceTest {
+    @Mock
+    private ReadingRepo readingRepo;
+
+    private ColumnarCatalog catalog;
+    private Map<Integer, Long> borrows;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        catalog = new ColumnarCatalog();
+        catalog.putAuthor(1, new Author("Martin Fowler"));
+        catalog.putAuthor(2, new Author("Kent Beck"));
+        catalog.putAuthor(3, new Author("Michael Nygard"));
+        catalog.putPublisher(1, new Publisher("Addison-Wesly"));
+        catalog.put(10, "Refactoring", new Integer[]{1, 2}, 1, BookStatus.AVAILABLE, 0);
+        catalog.put(11, "Release It!", new Integer[]{3}, 1, BookStatus.AVAILABLE, 0);
+        catalog.put(12, "Kanban", new Integer[]{3}, 1, BookStatus.AVAILABLE, 0);
+        borrows = new HashMap<>();
+        when(readingRepo.countBorrowsByBook()).thenReturn(borrows);
+    }
+
+    @Test
+    public void shouldRankBorrowedTitlesFirst() throws Exception {
+        borrows.put(11, 4L);
+        AutocompleteService service = AutocompleteService.build(catalog, readingRepo);
+
+        assertEquals(Arrays.asList("Release It!", "Refactoring"), service.suggest("re", 5));
+    }
+
+    @Test
+    public void shouldCountNewBorrowsTowardsPopularity() throws Exception {
+        AutocompleteService service = AutocompleteService.build(catalog, readingRepo);
+
+        service.bookStatusChanged(10, BookStatus.ISSUED, 1);
+        service.bookStatusChanged(10, BookStatus.AVAILABLE, 2);
+        service.bookStatusChanged(10, BookStatus.ISSUED, 3);
+
+        assertEquals(Arrays.asList("Refactoring", "Release It!"), service.suggest("re", 5));
+    }
+
+    @Test
+    public void shouldMergeTitleAndAuthorSuggestions() throws Exception {
+        borrows.put(10, 2L);
+        AutocompleteService service = AutocompleteService.build(catalog, readingRepo);
+
+        assertEquals(Arrays.asList("Kent Beck", "Kanban"), service.suggest("k", 5));
+        assertEquals(Arrays.asList("Martin Fowler", "Michael Nygard"), service.suggest("M", 5));
+    }
+}
@@ -0,0 +1,112 @@
+package test.service;
+
+import main.model.*;
+import main.repository.AnalyticsRepo;
+import main.service.CirculationAnalytics;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.when;
+
+public class CirculationAnalyticsTest {
+    private static final long DAY = 1000 * 60 * 60 * 24;
+
+    @Mock
+    private AnalyticsRepo analyticsRepo;
+
+    private CirculationAnalytics analytics;
+    private User user;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        analytics = new CirculationAnalytics(analyticsRepo, 10);
+        user = new User("rajbharath", new ArrayList<Permission>());
+    }
+
+    @Test
+    public void shouldCountBorrowsAndActiveLoans() throws Exception {
+        Reading first = reading(1, "Refactoring", new Date());
+        Reading second = reading(2, "Refactoring", new Date());
+        analytics.bookBorrowed(first);
+        analytics.bookBorrowed(second);
+        analytics.bookBorrowed(reading(3, "P EAA", new Date()));
+        analytics.bookReturned(first);
+
+        assertEquals(2, analytics.borrowCount("Refactoring"));
+        assertEquals("Refactoring", analytics.mostBorrowedBooks(1).get(0).getKey());
+        assertEquals(2, analytics.activeLoans("rajbharath"));
+    }
+
+    @Test
+    public void shouldTrackOverdueLoansByPublisher() throws Exception {
+        Reading overdue = reading(1, "Refactoring", new Date(System.currentTimeMillis() - 30 * DAY));
+        analytics.bookBorrowed(overdue);
+        analytics.bookBorrowed(reading(2, "P EAA", new Date()));
+
+        assertEquals(1, analytics.overdueCount("Addison-Wesly"));
+        analytics.bookReturned(overdue);
+        assertEquals(0, analytics.overdueCount("Addison-Wesly"));
+    }
+
+    @Test
+    public void shouldTrackLoansThatHaveNoReadingIdYet() throws Exception {
+        Reading refactoring = reading(1, "Refactoring", new Date());
+        Reading peaa = reading(2, "P EAA", new Date());
+        analytics.bookBorrowed(refactoring);
+        analytics.bookBorrowed(peaa);
+        assertEquals(2, analytics.activeLoans("rajbharath"));
+
+        analytics.bookReturned(peaa);
+        assertEquals(1, analytics.activeLoans("rajbharath"));
+    }
+
+    @Test
+    public void shouldCountOverdueLazyBooksByPublisherIdWithoutLoadingThem() throws Exception {
+        Book book = Book.lazy(5, "P EAA", BookStatus.AVAILABLE, b -> {
+            throw new Exception("should not load");
+        });
+        book.setPublisherId(3);
+        when(analyticsRepo.findPublisherNames(Collections.singleton(3))).thenReturn(Collections.singletonMap(3, "Addison-Wesly"));
+
+        analytics.bookBorrowed(new Reading(user, book, new Date(System.currentTimeMillis() - 30 * DAY)));
+
+        assertFalse(book.hasLoadedAssociations());
+        assertEquals(Collections.singletonMap("Addison-Wesly", 1L), analytics.overdueByPublisher());
+    }
+
+    @Test
+    public void shouldNameOverdueLoansOfUnsavedBooksByTheirPublisher() throws Exception {
+        Book tdd = new Book("TDD", Arrays.asList(new Author("Kent Beck")), new Publisher("Pearson"));
+        tdd.setId(3);
+        Book lazy = Book.lazy(4, "P EAA", BookStatus.AVAILABLE, b -> {
+            throw new Exception("should not load");
+        });
+        analytics.bookBorrowed(reading(1, "Refactoring", new Date(System.currentTimeMillis() - 30 * DAY)));
+        analytics.bookBorrowed(new Reading(user, tdd, new Date(System.currentTimeMillis() - 30 * DAY)));
+        analytics.bookBorrowed(new Reading(user, lazy, new Date(System.currentTimeMillis() - 30 * DAY)));
+
+        Map<String, Long> overdue = analytics.overdueByPublisher();
+
+        assertEquals(2, overdue.size());
+        assertEquals(Long.valueOf(1), overdue.get("Addison-Wesly"));
+        assertEquals(Long.valueOf(1), overdue.get("Pearson"));
+        assertEquals(3, analytics.activeLoans("rajbharath"));
+    }
+
+    private Reading reading(int id, String bookName, Date borrowedDate) throws Exception {
+        Book book = new Book(bookName, Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(id);
+        return new Reading(user, book, borrowedDate);
+    }
+}
@@ -1,11 +1,11 @@
 package test.service;
 
-import main.model.Book;
-import main.model.Permission;
-import main.model.Reading;
-import main.model.User;
+import main.model.*;
 import main.repository.ReadingRepo;
+import main.repository.ReservationRepo;
+import main.repository.StaleBookException;
 import main.service.ReadingService;
+import main.service.ReservationService;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -13,8 +13,19 @@ import org.junit.rules.ExpectedException;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,6 +46,9 @@ public class ReadingServiceTest {
     @Mock
     Reading reading;
 
+    @Mock
+    ReservationRepo reservationRepo;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
@@ -215,4 +229,118 @@ public class ReadingServiceTest {
         service.returnBook(null, null);
     }
 
+    @Test
+    public void shouldBorrowBooksReportingOutcomePerBook() throws Exception {
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(user.isAuthorized(Permission.BORROW_BOOK)).thenReturn(true);
+        Book refactoring = new Book("Refactoring", new ArrayList<Author>(), new Publisher("Addison"));
+        Book peaa = new Book("P EAA", new ArrayList<Author>(), new Publisher("Addison"));
+        Book issued = new Book("TDD", new ArrayList<Author>(), new Publisher("Addison"));
+        issued.issue();
+        when(readingRepo.saveAll(anyListOf(Reading.class))).thenReturn(new boolean[]{true, false});
+        ReadingService service = new ReadingService(readingRepo);
+
+        List<ReadingOutcome> outcomes = service.borrowBooks(user, Arrays.asList(refactoring, issued, peaa));
+
+        assertEquals(3, outcomes.size());
+        assertTrue(outcomes.get(0).isSuccessful());
+        assertFalse(refactoring.isAvailable());
+        assertFalse(outcomes.get(1).isSuccessful());
+        assertEquals("Book Not available", outcomes.get(1).getMessage());
+        assertFalse(outcomes.get(2).isSuccessful());
+        assertTrue(peaa.isAvailable());
+    }
+
+    @Test
+    public void shouldReturnBooksReportingOutcomePerBook() throws Exception {
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(user.isAuthorized(Permission.RETURN_BOOK)).thenReturn(true);
+        Book refactoring = new Book("Refactoring", new ArrayList<Author>(), new Publisher("Addison"));
+        refactoring.setId(1);
+        refactoring.issue();
+        Book notBorrowed = new Book("P EAA", new ArrayList<Author>(), new Publisher("Addison"));
+        notBorrowed.setId(2);
+        Map<Integer, Reading> readings = new HashMap<>();
+        readings.put(1, new Reading(user, refactoring, new java.util.Date()));
+        when(readingRepo.findByUserAndBooks(any(User.class), anyListOf(Book.class))).thenReturn(readings);
+        when(readingRepo.updateAll(anyListOf(Reading.class))).thenReturn(new boolean[]{true});
+        ReadingService service = new ReadingService(readingRepo);
+
+        List<ReadingOutcome> outcomes = service.returnBooks(user, Arrays.asList(refactoring, notBorrowed));
+
+        assertTrue(outcomes.get(0).isSuccessful());
+        assertTrue(refactoring.isAvailable());
+        assertFalse(outcomes.get(1).isSuccessful());
+        assertEquals("User currently has no reading on the given book", outcomes.get(1).getMessage());
+    }
+
+    @Test
+    public void shouldThrowExceptionToBorrowBooksForUnauthorizedUser() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("User not authorized to borrow book");
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(user.isAuthorized(Permission.BORROW_BOOK)).thenReturn(false);
+        ReadingService service = new ReadingService(readingRepo);
+        service.borrowBooks(user, Arrays.asList(book));
+    }
+
+    @Test
+    public void shouldReturnHistorySpanningActiveAndArchivedReadings() throws Exception {
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(readingRepo.findHistoryByUser(user)).thenReturn(Arrays.asList(reading, reading));
+        ReadingService service = new ReadingService(readingRepo);
+
+        assertEquals(2, service.getReadingHistory(user).size());
+    }
+
+    @Test
+    public void shouldThrowExceptionForHistoryOfNullUser() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Null User Found");
+        new ReadingService(readingRepo).getReadingHistory(null);
+    }
+
+    @Test
+    public void shouldRetryBorrowAfterConcurrentBookUpdate() throws Exception {
+        Book realBook = new Book("P EAA", Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        realBook.setId(7);
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(user.isAuthorized(Permission.BORROW_BOOK)).thenReturn(true);
+        when(readingRepo.save(any(Reading.class))).thenThrow(new StaleBookException(7, 0, 1)).thenReturn(true);
+        when(readingRepo.refresh(realBook)).thenAnswer(invocation -> {
+            realBook.setBookStatus(BookStatus.AVAILABLE);
+            realBook.setVersion(1);
+            return true;
+        });
+        ReadingService service = new ReadingService(readingRepo);
+
+        assertTrue(service.borrowBook(user, realBook));
+
+        verify(readingRepo, times(2)).save(any(Reading.class));
+        assertFalse(realBook.isAvailable());
+        assertEquals(1, realBook.getVersion());
+    }
+
+    @Test
+    public void shouldDropStaleReservationAndLeaveBookAvailable() throws Exception {
+        Book realBook = new Book("Refactoring", new ArrayList<Author>(), new Publisher("Addison"));
+        realBook.setId(7);
+        realBook.issue();
+        Reservation stale = new Reservation("gone", 7, "Refactoring", new Date());
+        when(user.getUsername()).thenReturn("rajbharath");
+        when(user.isAuthorized(Permission.RETURN_BOOK)).thenReturn(true);
+        when(readingRepo.findByUserAndBook(user, realBook)).thenReturn(reading);
+        when(readingRepo.handOver(any(Reading.class), any(Reading.class), any(Reservation.class))).thenReturn(false);
+        when(readingRepo.update(reading)).thenReturn(true);
+        when(reservationRepo.findWaitingByTitle("refactoring")).thenReturn(Arrays.asList(stale));
+        ReservationService reservationService = new ReservationService(reservationRepo);
+        ReadingService service = new ReadingService(readingRepo, reservationService);
+
+        assertTrue(service.returnBook(user, realBook));
+
+        verify(readingRepo).handOver(any(Reading.class), any(Reading.class), any(Reservation.class));
+        verify(readingRepo).update(reading);
+        assertTrue(realBook.isAvailable());
+        assertFalse(reservationService.hasWaiting(realBook));
+    }
 }
@@ -0,0 +1,102 @@
+package test.service;
+
+import main.model.*;
+import main.repository.Invalidation;
+import main.repository.ReservationRepo;
+import main.service.ReservationService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReservationServiceTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Mock
+    ReservationRepo reservationRepo;
+
+    private Book book;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        book = new Book("Refactoring", new ArrayList<Author>(), new Publisher("Addison"));
+        book.setId(7);
+        book.issue();
+    }
+
+    @Test
+    public void shouldQueueReservationsInArrivalOrder() throws Exception {
+        when(reservationRepo.findWaitingByTitle("refactoring")).thenReturn(Arrays.asList(new Reservation("first", 7, "Refactoring", new Date())));
+        when(reservationRepo.save(any(Reservation.class))).thenReturn(true);
+        ReservationService service = new ReservationService(reservationRepo);
+
+        service.reserveBook(member("second"), book);
+
+        assertEquals(1, service.positionOf(member("first"), book));
+        assertEquals(2, service.positionOf(member("second"), book));
+    }
+
+    @Test
+    public void shouldThrowExceptionToReserveAvailableBook() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Book is available, borrow it instead");
+        book.returned();
+        ReservationService service = new ReservationService(reservationRepo);
+        service.reserveBook(member("rajbharath"), book);
+    }
+
+    @Test
+    public void shouldThrowExceptionToReserveSameBookTwice() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Book already reserved by the user");
+        when(reservationRepo.findWaitingByTitle("refactoring")).thenReturn(Arrays.asList(new Reservation("rajbharath", 7, "Refactoring", new Date())));
+        ReservationService service = new ReservationService(reservationRepo);
+        service.reserveBook(member("rajbharath"), book);
+    }
+
+    @Test
+    public void shouldShareOneQueueAcrossCopiesOfTheSameTitle() throws Exception {
+        when(reservationRepo.findWaitingByTitle("refactoring")).thenReturn(Arrays.asList(new Reservation("first", 7, "Refactoring", new Date())));
+        Book copy = new Book(" REFACTORING ", new ArrayList<Author>(), new Publisher("Addison"));
+        copy.setId(8);
+        copy.issue();
+        ReservationService service = new ReservationService(reservationRepo);
+
+        assertEquals(1, service.positionOf(member("first"), copy));
+        assertEquals(1, service.positionOf(member("first"), book));
+        verify(reservationRepo, times(1)).findWaitingByTitle("refactoring");
+    }
+
+    @Test
+    public void shouldReloadQueueAfterReservationInvalidation() throws Exception {
+        when(reservationRepo.findWaitingByTitle("refactoring"))
+                .thenReturn(Arrays.asList(new Reservation("first", 7, "Refactoring", new Date())))
+                .thenReturn(Arrays.asList(new Reservation("second", 7, "Refactoring", new Date())));
+        ReservationService service = new ReservationService(reservationRepo);
+        assertEquals(1, service.positionOf(member("first"), book));
+
+        service.applyInvalidation(new Invalidation("other-node", Invalidation.Type.RESERVATION, "refactoring".hashCode(), null));
+
+        assertEquals(-1, service.positionOf(member("first"), book));
+        assertEquals(1, service.positionOf(member("second"), book));
+    }
+
+    private User member(String username) {
+        return new User(username, Arrays.asList(Permission.BORROW_BOOK));
+    }
+}
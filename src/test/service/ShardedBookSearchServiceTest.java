@@ -0,0 +1,108 @@
+package test.service;
+
+import main.catalog.SearchHit;
+import main.model.Author;
+import main.model.Book;
+import main.model.Publisher;
+import main.service.BookSearchService;
+import main.service.ShardedBookSearchService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.when;
+
+public class ShardedBookSearchServiceTest {
+    @Mock
+    private BookSearchService north;
+    @Mock
+    private BookSearchService south;
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private ExecutorService executor;
+    private ShardedBookSearchService service;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        executor = Executors.newFixedThreadPool(2);
+        Map<String, BookSearchService> branches = new LinkedHashMap<>();
+        branches.put("north", north);
+        branches.put("south", south);
+        service = new ShardedBookSearchService(branches, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldMergeResultsFromAllBranches() throws Exception {
+        when(north.searchBookByName("re")).thenReturn(books("Refactoring"));
+        when(south.searchBookByName("re")).thenReturn(books("Release It!", "Refactoring"));
+
+        List<Book> books = service.searchBookByName("re");
+
+        assertEquals(3, books.size());
+        assertEquals("north", books.get(0).getBranch());
+        assertEquals("south", books.get(1).getBranch());
+        assertEquals("Release It!", books.get(2).getName());
+    }
+
+    @Test
+    public void shouldPropagateBranchFailure() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Null Criteria Found");
+        when(north.searchBookByName(null)).thenReturn(new ArrayList<Book>());
+        when(south.searchBookByName(null)).thenThrow(new Exception("Null Criteria Found"));
+        service.searchBookByName(null);
+    }
+
+    @Test
+    public void shouldRejectUnknownBranch() throws Exception {
+        thrown.expect(Exception.class);
+        thrown.expectMessage("Unknown branch: east");
+        service.searchBookByNameInBranch("east", "re");
+    }
+
+    @Test
+    public void shouldMergeFuzzyResultsByRelevanceAcrossBranches() throws Exception {
+        when(north.searchHitsByNameFuzzy("refactorin", 2)).thenReturn(Arrays.asList(new SearchHit(1, 0.6f, 11), new SearchHit(2, 0.5f, 11)));
+        when(south.searchHitsByNameFuzzy("refactorin", 2)).thenReturn(Arrays.asList(new SearchHit(1, 0.9f, 11), new SearchHit(3, 0.4f, 11)));
+        when(north.findHit(any(SearchHit.class))).thenAnswer(invocation -> books("North " + ((SearchHit) invocation.getArguments()[0]).getBookId()).get(0));
+        when(south.findHit(any(SearchHit.class))).thenAnswer(invocation -> books("South " + ((SearchHit) invocation.getArguments()[0]).getBookId()).get(0));
+
+        List<Book> books = service.searchBookByNameFuzzy("refactorin", 2);
+
+        assertEquals(2, books.size());
+        assertEquals("South 1", books.get(0).getName());
+        assertEquals("south", books.get(0).getBranch());
+        assertEquals("North 1", books.get(1).getName());
+        assertEquals("north", books.get(1).getBranch());
+    }
+
+    private static List<Book> books(String... names) throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (String name : names) {
+            books.add(new Book(name, Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly")));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,152 @@
+package test.service;
+
+import main.model.*;
+import main.repository.CirculationOutbox;
+import main.repository.OutboxEntry;
+import main.repository.ReadingRepo;
+import main.service.WriteBehindCirculation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindCirculationTest {
+    @Mock
+    private ReadingRepo readingRepo;
+
+    @Captor
+    private ArgumentCaptor<List<OutboxEntry>> batch;
+
+    private Path file;
+    private User user;
+    private Book book;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = Files.createTempFile("circulation", ".outbox");
+        user = new User("rajbharath", new ArrayList<Permission>());
+        book = new Book("Refactoring", Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(7);
+        when(readingRepo.applyOutbox(anyString(), anyListOf(OutboxEntry.class))).thenReturn(new ArrayList<OutboxEntry>());
+    }
+
+    @Test
+    public void shouldServePendingLoansAndFlushThemInOneBatch() throws Exception {
+        CirculationOutbox outbox = new CirculationOutbox(file);
+        WriteBehindCirculation writeBehind = new WriteBehindCirculation(readingRepo, outbox);
+        Reading reading = new Reading(user, book, new Date());
+        writeBehind.borrowed(reading);
+        assertSame(reading, writeBehind.findActive(user, book));
+
+        reading.returnReading();
+        writeBehind.returned(reading);
+        assertNull(writeBehind.findActive(user, book));
+        verify(readingRepo, never()).findByUserAndBook(user, book);
+        verify(readingRepo).announceStatus(7, BookStatus.AVAILABLE);
+
+        assertEquals(2, writeBehind.flush());
+        verify(readingRepo).applyOutbox(eq(outbox.getName()), batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertEquals(0, writeBehind.pendingCount());
+        assertTrue(new CirculationOutbox(file).readAll().isEmpty());
+    }
+
+    @Test
+    public void shouldRejectASecondPendingBorrowOfTheSameBookWithoutTouchingTheDatabase() throws Exception {
+        WriteBehindCirculation writeBehind = new WriteBehindCirculation(readingRepo, new CirculationOutbox(file));
+        writeBehind.borrowed(new Reading(user, book, new Date()));
+        try {
+            writeBehind.borrowed(new Reading(new User("other", new ArrayList<Permission>()), book, new Date()));
+            fail();
+        } catch (Exception e) {
+            assertEquals("Book Not available", e.getMessage());
+        }
+        assertEquals(1, writeBehind.pendingCount());
+        assertEquals(1, new CirculationOutbox(file).readAll().size());
+        verify(readingRepo, never()).applyOutbox(anyString(), anyListOf(OutboxEntry.class));
+    }
+
+    @Test
+    public void shouldDropBorrowsTheFlushLostToAnotherNode() throws Exception {
+        WriteBehindCirculation writeBehind = new WriteBehindCirculation(readingRepo, new CirculationOutbox(file));
+        writeBehind.borrowed(new Reading(user, book, new Date()));
+        when(readingRepo.applyOutbox(anyString(), anyListOf(OutboxEntry.class))).thenAnswer(invocation -> batchOf(invocation));
+
+        assertEquals(0, writeBehind.flush());
+        assertEquals(0, writeBehind.pendingCount());
+        assertNull(writeBehind.findActive(user, book));
+        verify(readingRepo, times(2)).announceStatus(7, BookStatus.ISSUED);
+    }
+
+    @Test
+    public void shouldKeepTheBatchWhenApplyingItFails() throws Exception {
+        doThrow(new SQLException("watermark")).when(readingRepo).applyOutbox(anyString(), anyListOf(OutboxEntry.class));
+        WriteBehindCirculation writeBehind = new WriteBehindCirculation(readingRepo, new CirculationOutbox(file));
+        writeBehind.borrowed(new Reading(user, book, new Date()));
+        try {
+            writeBehind.flush();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("watermark", e.getMessage());
+        }
+        assertEquals(1, writeBehind.pendingCount());
+        assertEquals(1, new CirculationOutbox(file).readAll().size());
+    }
+
+    @Test
+    public void shouldNameTheJournalByHostAndPath() throws Exception {
+        assertTrue(new CirculationOutbox(file).getName().endsWith(":" + file.toAbsolutePath().normalize()));
+    }
+
+    @Test
+    public void shouldReplayUnappliedEntriesAfterCrash() throws Exception {
+        CirculationOutbox crashed = new CirculationOutbox(file);
+        Reading reading = new Reading(user, book, new Date());
+        crashed.append(OutboxEntry.of(1, OutboxEntry.Type.BORROW, reading));
+        reading.returnReading();
+        crashed.append(OutboxEntry.of(2, OutboxEntry.Type.RETURN, reading));
+        when(readingRepo.appliedOutboxSeq(crashed.getName())).thenReturn(1L);
+
+        WriteBehindCirculation writeBehind = new WriteBehindCirculation(readingRepo, new CirculationOutbox(file));
+        assertEquals(1, writeBehind.recover());
+
+        verify(readingRepo).applyOutbox(anyString(), batch.capture());
+        OutboxEntry replayed = batch.getValue().get(0);
+        assertEquals(2, replayed.getSeq());
+        assertEquals(OutboxEntry.Type.RETURN, replayed.getType());
+        verify(readingRepo).announceStatus(7, BookStatus.AVAILABLE);
+
+        writeBehind.borrowed(new Reading(user, book, new Date()));
+        assertEquals(3, new CirculationOutbox(file).readAll().get(0).getSeq());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<OutboxEntry> batchOf(InvocationOnMock invocation) {
+        return (List<OutboxEntry>) invocation.getArguments()[1];
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,37 @@
+package test.util;
+
+import main.model.Author;
+import main.util.Interner;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class InternerTest {
+
+    @Test
+    public void shouldShareInstanceForSameId() throws Exception {
+        Interner<Author> interner = new Interner<>();
+        Author first = interner.intern(1, new Author("Martin Fowler"));
+        Author second = interner.intern(1, new Author("Martin Fowler"));
+        assertSame(first, second);
+        assertSame(first, interner.get(1));
+    }
+
+    @Test
+    public void shouldReplaceInstanceWhenValueChanged() throws Exception {
+        Interner<Author> interner = new Interner<>();
+        interner.intern(1, new Author("Fowler"));
+        Author renamed = interner.intern(1, new Author("Martin Fowler"));
+        assertEquals("Martin Fowler", interner.get(1).getName());
+        assertSame(renamed, interner.get(1));
+    }
+
+    @Test
+    public void shouldForgetEvictedInstance() throws Exception {
+        Interner<Author> interner = new Interner<>();
+        interner.intern(1, new Author("Martin Fowler"));
+        interner.evict(1);
+        assertNull(interner.get(1));
+        assertEquals(0, interner.size());
+    }
+}
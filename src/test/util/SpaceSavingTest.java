@@ -0,0 +1,39 @@
+package test.util;
+
+import main.util.SpaceSaving;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void shouldRankHeavyHittersFirst() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(3);
+        sketch.offer("Refactoring", 10);
+        sketch.offer("P EAA", 4);
+        sketch.offer("TDD", 6);
+        sketch.offer("P EAA", 3);
+
+        List<SpaceSaving.Counter<String>> top = sketch.top(2);
+        assertEquals("Refactoring", top.get(0).getKey());
+        assertEquals("P EAA", top.get(1).getKey());
+        assertEquals(7, top.get(1).getCount());
+    }
+
+    @Test
+    public void shouldReplaceSmallestCounterWhenFull() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        sketch.offer("Refactoring", 10);
+        sketch.offer("TDD", 2);
+        sketch.offer("Release It!", 1);
+
+        List<SpaceSaving.Counter<String>> top = sketch.top(5);
+        assertEquals(2, top.size());
+        assertEquals("Release It!", top.get(1).getKey());
+        assertEquals(3, top.get(1).getCount());
+        assertEquals(2, top.get(1).getError());
+    }
+}
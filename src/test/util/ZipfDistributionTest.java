@@ -0,0 +1,37 @@
+package test.util;
+
+import main.util.ZipfDistribution;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class ZipfDistributionTest {
+
+    @Test
+    public void shouldFavourLowRanks() {
+        ZipfDistribution distribution = new ZipfDistribution(1000, 1.0);
+        Random random = new Random(7);
+        int[] counts = new int[1000];
+        for (int i = 0; i < 100000; i++) {
+            int rank = distribution.sample(random);
+            assertTrue(rank >= 0 && rank < 1000);
+            counts[rank]++;
+        }
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[9]);
+        int head = 0;
+        for (int rank = 0; rank < 10; rank++) head += counts[rank];
+        assertTrue(head > 100000 / 3);
+    }
+
+    @Test
+    public void shouldBeUniformWithoutSkew() {
+        ZipfDistribution distribution = new ZipfDistribution(4, 0);
+        Random random = new Random(7);
+        int[] counts = new int[4];
+        for (int i = 0; i < 40000; i++) counts[distribution.sample(random)]++;
+        for (int count : counts) assertTrue(Math.abs(count - 10000) < 500);
+    }
+}
@@ -0,0 +1,61 @@
+package test.workload;
+
+import main.workload.LoadGenerator;
+import main.workload.Seed;
+import main.workload.TraceRecord;
+import main.workload.WorkloadReplayer;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    @Test
+    public void shouldReturnEveryBorrowedBookAfterItWasBorrowed() {
+        List<String> titles = new ArrayList<>();
+        int[] bookIds = new int[50];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = 100 + i;
+            titles.add("Title " + i);
+        }
+        Seed seed = new Seed(Arrays.asList("ana", "bo", "cy"), "load", bookIds, titles);
+        List<TraceRecord> records = new LoadGenerator(seed, 1.0, 3).generate(500, 50, 30, 20);
+
+        Map<String, String> active = new HashMap<>();
+        int searches = 0;
+        for (TraceRecord record : records) {
+            String bookId = record.getArg(1);
+            if (record.getOperation() == TraceRecord.Operation.SEARCH) searches++;
+            else if (record.getOperation() == TraceRecord.Operation.BORROW)
+                assertEquals(null, active.put(bookId, record.getUsername()));
+            else assertEquals(record.getUsername(), active.remove(bookId));
+        }
+        assertTrue(active.isEmpty());
+        assertTrue(searches > 150);
+    }
+
+    @Test
+    public void shouldRouteEveryOperationOnABookToTheSameWorker() {
+        List<String> titles = new ArrayList<>();
+        int[] bookIds = new int[5];
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = 100 + i;
+            titles.add("Title " + i);
+        }
+        Seed seed = new Seed(Arrays.asList("ana", "bo", "cy", "dee"), "load", bookIds, titles);
+        List<TraceRecord> records = new LoadGenerator(seed, 1.0, 3).generate(500, 0, 60, 40);
+
+        Map<String, String> routes = new HashMap<>();
+        Set<String> borrowers = new HashSet<>();
+        for (TraceRecord record : records) {
+            borrowers.add(record.getUsername());
+            String route = WorkloadReplayer.routingKey(record);
+            String previous = routes.put(record.getArg(1), route);
+            if (previous != null) assertEquals(previous, route);
+        }
+        assertTrue(borrowers.size() > 1);
+    }
+}
@@ -0,0 +1,97 @@
+package test.workload;
+
+import main.model.*;
+import main.service.AuthenticationService;
+import main.service.BookSearchService;
+import main.service.ReadingService;
+import main.service.ServiceManager;
+import main.workload.ReplayReport;
+import main.workload.TraceRecord;
+import main.workload.WorkloadRecorder;
+import main.workload.WorkloadReplayer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class WorkloadRecorderTest {
+    @Mock
+    private ServiceManager serviceManager;
+    @Mock
+    private AuthenticationService authenticationService;
+    @Mock
+    private BookSearchService bookSearchService;
+    @Mock
+    private ReadingService readingService;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        file = Files.createTempFile("workload", ".trace");
+        when(serviceManager.getAuthenticationService()).thenReturn(authenticationService);
+        when(serviceManager.getBookSearchService()).thenReturn(bookSearchService);
+        when(serviceManager.getReadingService()).thenReturn(readingService);
+    }
+
+    @Test
+    public void shouldRoundTripRecordedCalls() throws Exception {
+        try (WorkloadRecorder recorder = new WorkloadRecorder(file)) {
+            recorder.record(TraceRecord.Operation.SEARCH, () -> new ArrayList<Book>(), "rajbharath", "Refactoring");
+            recorder.record(TraceRecord.Operation.BORROW, () -> false, "rajbharath", "7", "Refactoring");
+        }
+
+        List<TraceRecord> records = WorkloadRecorder.read(file);
+        assertEquals(2, records.size());
+        assertEquals(TraceRecord.Operation.SEARCH, records.get(0).getOperation());
+        assertEquals("Refactoring", records.get(0).getArg(1));
+        assertTrue(records.get(0).isSuccessful());
+        assertFalse(records.get(1).isSuccessful());
+        assertEquals("7", records.get(1).getArg(1));
+        assertTrue(records.get(1).getOffsetMicros() >= records.get(0).getOffsetMicros());
+    }
+
+    @Test
+    public void shouldReplayTraceAndReportPerOperation() throws Exception {
+        User user = new User("rajbharath", new ArrayList<Permission>());
+        Book book = new Book("Refactoring", Arrays.asList(new Author("Martin Fowler")), new Publisher("Addison-Wesly"));
+        book.setId(7);
+        when(authenticationService.authenticate("rajbharath", "secret")).thenReturn(user);
+        when(bookSearchService.searchBookByName("Refactoring")).thenReturn(Arrays.asList(book));
+        when(readingService.borrowBook(user, book)).thenReturn(true);
+        when(readingService.returnBook(any(User.class), any(Book.class))).thenThrow(new Exception("User currently has no reading on the given book"));
+
+        List<TraceRecord> records = Arrays.asList(
+                new TraceRecord(TraceRecord.Operation.AUTHENTICATE, 0, 900, true, "rajbharath"),
+                new TraceRecord(TraceRecord.Operation.SEARCH, 10, 400, true, "rajbharath", "Refactoring"),
+                new TraceRecord(TraceRecord.Operation.BORROW, 20, 1200, true, "rajbharath", "7", "Refactoring"),
+                new TraceRecord(TraceRecord.Operation.RETURN, 30, 1100, true, "rajbharath", "7", "Refactoring"));
+        ReplayReport report = new WorkloadReplayer(() -> serviceManager, "secret").replay(records, 0, 2);
+
+        assertEquals(4, report.totalCount());
+        assertEquals(0, report.errors(TraceRecord.Operation.BORROW));
+        assertEquals(1, report.errors(TraceRecord.Operation.RETURN));
+        assertEquals(1200, report.recordedPercentile(TraceRecord.Operation.BORROW, 99));
+        verify(readingService).borrowBook(user, book);
+        verify(authenticationService, times(1)).authenticate("rajbharath", "secret");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+}